@@ -0,0 +1,152 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CircuitBreakerConfig;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * B站API与代理的熔断器，所有账号共享
+ * <p>
+ * 每个接口、每个代理各自维护状态：连续失败达到阈值后熔断，熔断期间的请求直接失败；
+ * 熔断到期后进入半开状态，只放行少量探测请求，探测成功则恢复，失败则重新熔断。
+ * 状态为不可变对象，以CAS方式更新。
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+@Component
+@Log4j2
+public class ApiCircuitBreaker {
+    private final CircuitBreakerConfig circuitBreakerConfig;
+    private final Map<String, AtomicReference<State>> states = new ConcurrentHashMap<>();
+
+    public ApiCircuitBreaker(CircuitBreakerConfig circuitBreakerConfig) {
+        this.circuitBreakerConfig = circuitBreakerConfig;
+    }
+
+    /**
+     * 请求前检查是否放行
+     *
+     * @param key 接口名或代理地址，为null时总是放行
+     * @return 是否放行，放行后必须调用 {@link #onSuccess}、{@link #onFailure} 或 {@link #release} 之一
+     */
+    public boolean tryAcquire(String key) {
+        if (!circuitBreakerConfig.isEnabled() || key == null) {
+            return true;
+        }
+        AtomicReference<State> ref = stateOf(key);
+        while (true) {
+            State current = ref.get();
+            State next;
+            switch (current.status) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.currentTimeMillis() - current.openedAt < circuitBreakerConfig.getOpenDuration().toMillis()) {
+                        return false;
+                    }
+                    next = new State(Status.HALF_OPEN, current.failures, current.openedAt, 1);
+                    break;
+                default:
+                    if (current.probes >= circuitBreakerConfig.getHalfOpenProbes()) {
+                        return false;
+                    }
+                    next = new State(Status.HALF_OPEN, current.failures, current.openedAt, current.probes + 1);
+                    break;
+            }
+            if (ref.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 放行后未实际发送请求，归还探测名额
+     */
+    public void release(String key) {
+        if (!circuitBreakerConfig.isEnabled() || key == null) {
+            return;
+        }
+        stateOf(key).updateAndGet(current -> current.status == Status.HALF_OPEN && current.probes > 0 ?
+                new State(Status.HALF_OPEN, current.failures, current.openedAt, current.probes - 1) : current);
+    }
+
+    public void onSuccess(String key) {
+        if (!circuitBreakerConfig.isEnabled() || key == null) {
+            return;
+        }
+        State previous = stateOf(key).getAndSet(State.CLOSED);
+        if (previous.status != Status.CLOSED) {
+            log.info("[{}]已恢复", key);
+        }
+    }
+
+    public void onFailure(String key) {
+        if (!circuitBreakerConfig.isEnabled() || key == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        State previous = stateOf(key).getAndUpdate(current -> {
+            if (current.status == Status.OPEN) {
+                return current;
+            }
+            int failures = current.failures + 1;
+            if (current.status == Status.HALF_OPEN || failures >= circuitBreakerConfig.getFailureThreshold()) {
+                return new State(Status.OPEN, failures, now, 0);
+            }
+            return new State(Status.CLOSED, failures, 0L, 0);
+        });
+        if (previous.status != Status.OPEN && stateOf(key).get().status == Status.OPEN) {
+            log.warn("[{}]连续失败{}次，熔断{}", key, previous.failures + 1, circuitBreakerConfig.getOpenDuration());
+        }
+    }
+
+    /**
+     * 未处于关闭状态的熔断器
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        states.forEach((key, ref) -> {
+            State state = ref.get();
+            if (state.status != Status.CLOSED || state.failures > 0) {
+                stats.put(key, state.status + "(" + state.failures + ")");
+            }
+        });
+        return stats;
+    }
+
+    private AtomicReference<State> stateOf(String key) {
+        return states.computeIfAbsent(key, k -> new AtomicReference<>(State.CLOSED));
+    }
+
+    private enum Status {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final class State {
+        private static final State CLOSED = new State(Status.CLOSED, 0, 0L, 0);
+
+        private final Status status;
+        /**
+         * 连续失败次数
+         */
+        private final int failures;
+        private final long openedAt;
+        /**
+         * 半开状态下已放行的探测请求数
+         */
+        private final int probes;
+
+        private State(Status status, int failures, long openedAt, int probes) {
+            this.status = status;
+            this.failures = failures;
+            this.openedAt = openedAt;
+            this.probes = probes;
+        }
+    }
+}
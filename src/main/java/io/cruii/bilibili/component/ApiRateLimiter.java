@@ -0,0 +1,140 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.RateLimitConfig;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 所有账号共享的B站API限流器
+ * <p>
+ * 每个接口（可选再按代理区分）一个令牌桶，使用GCRA算法以CAS方式预约发送时间，不加锁。
+ * 预约总能成功，返回需要等待的时长，由调用方延迟发送。
+ * 被B站限流时速率按比例降低，之后每次成功请求逐步恢复至配置值。
+ *
+ * @author cruii
+ * Created on 2022/01/19
+ */
+@Component
+@Log4j2
+public class ApiRateLimiter {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    private final RateLimitConfig rateLimitConfig;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public ApiRateLimiter(RateLimitConfig rateLimitConfig) {
+        this.rateLimitConfig = rateLimitConfig;
+    }
+
+    /**
+     * 预约一次请求
+     *
+     * @param endpoint 接口名，为null时不限流
+     * @param proxy    使用的代理，可为null
+     * @return 发送前需要等待的纳秒数
+     */
+    public long reserve(String endpoint, String proxy) {
+        if (!rateLimitConfig.isEnabled() || endpoint == null) {
+            return 0L;
+        }
+        return bucket(endpoint, proxy).reserve();
+    }
+
+    /**
+     * 请求未被限流，逐步恢复速率
+     */
+    public void onSuccess(String endpoint, String proxy) {
+        if (rateLimitConfig.isEnabled() && endpoint != null) {
+            bucket(endpoint, proxy).increase();
+        }
+    }
+
+    /**
+     * 请求被B站限流，降低速率
+     */
+    public void onThrottled(String endpoint, String proxy) {
+        if (rateLimitConfig.isEnabled() && endpoint != null) {
+            throttled.incrementAndGet();
+            bucket(endpoint, proxy).decrease();
+        }
+    }
+
+    /**
+     * 各接口当前的每秒请求数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        buckets.forEach((key, bucket) -> stats.put(key, Math.round(bucket.rate() * 100) / 100D));
+        stats.put("throttled", throttled.get());
+        return stats;
+    }
+
+    private Bucket bucket(String endpoint, String proxy) {
+        String key = rateLimitConfig.isPerProxy() && proxy != null ? endpoint + "@" + proxy : endpoint;
+        return buckets.computeIfAbsent(key, k -> new Bucket(rateLimitConfig.getRate(endpoint)));
+    }
+
+    private class Bucket {
+        private final long configuredInterval;
+        private final long maxInterval;
+        /**
+         * 两次请求之间的间隔，随限流情况调整
+         */
+        private final AtomicLong interval;
+        /**
+         * 理论上下一次请求可以发送的时间
+         */
+        private final AtomicLong theoreticalArrival;
+        private final AtomicLong lastDecrease = new AtomicLong();
+
+        private Bucket(double rate) {
+            configuredInterval = (long) (SECOND / Math.max(rate, 0.001D));
+            maxInterval = (long) (configuredInterval / Math.max(rateLimitConfig.getMinRatio(), 0.001D));
+            interval = new AtomicLong(configuredInterval);
+            theoreticalArrival = new AtomicLong(System.nanoTime());
+            lastDecrease.set(System.nanoTime() - SECOND);
+        }
+
+        private long reserve() {
+            while (true) {
+                long now = System.nanoTime();
+                long emission = interval.get();
+                long tolerance = emission * (Math.max(rateLimitConfig.getBurst(), 1) - 1);
+                long tat = theoreticalArrival.get();
+                long start = Math.max(tat, now);
+                if (theoreticalArrival.compareAndSet(tat, start + emission)) {
+                    return Math.max(0L, start - tolerance - now);
+                }
+            }
+        }
+
+        private void increase() {
+            double step = SECOND / (double) configuredInterval * rateLimitConfig.getIncreaseRatio();
+            interval.updateAndGet(current -> current <= configuredInterval ? current :
+                    Math.max(configuredInterval, (long) (SECOND / (SECOND / (double) current + step))));
+        }
+
+        private void decrease() {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            // 同一批被限流的请求只降低一次
+            if (now - last < SECOND || !lastDecrease.compareAndSet(last, now)) {
+                return;
+            }
+            long updated = interval.updateAndGet(current ->
+                    Math.min(maxInterval, (long) (current / Math.max(rateLimitConfig.getDecreaseFactor(), 0.01D))));
+            log.warn("请求被B站限流，速率降低至每秒{}次", Math.round(SECOND * 100D / updated) / 100D);
+        }
+
+        private double rate() {
+            return SECOND / (double) interval.get();
+        }
+    }
+}
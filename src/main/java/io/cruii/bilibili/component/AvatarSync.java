@@ -0,0 +1,373 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.cruii.bilibili.config.AvatarConfig;
+import io.cruii.bilibili.config.TimeoutConfig;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同步账号头像到对象存储
+ * <p>
+ * B站的头像地址随内容变化，同一地址已下载过时不再请求，也不写入磁盘；
+ * 超过 {@link AvatarConfig#getRevalidateAfter()} 后以 If-None-Match、If-Modified-Since 发送条件请求确认。
+ * 头像内容按SHA-256保存在本地，不同地址或不同账号的相同内容只保存一份；
+ * 账号头像的内容与上次上传的相同时不再上传，上传由 {@link ObjectUploader} 异步完成。
+ * <p>
+ * 头像地址、内容摘要与各账号已上传的内容记录在索引文件中，重启后仍然有效。
+ * 索引变化后延迟 {@link AvatarConfig#getFlushDelay()} 写入，期间的变化只写一次，停止时写入未保存的变化。
+ *
+ * @author cruii
+ * Created on 2022/01/25
+ */
+@Component
+@Log4j2
+public class AvatarSync {
+    private static final String INDEX_FILE = "index.json";
+    private static final String OBJECTS_DIR = "objects";
+    private static final String DEFAULT_EXT = "jpg";
+
+    private final AvatarConfig avatarConfig;
+    private final TimeoutConfig timeoutConfig;
+    private final BilibiliHttpClient httpClient;
+    private final ObjectUploader objectUploader;
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * 头像地址与内容的对应关系
+     */
+    private final Map<String, Blob> urls = new ConcurrentHashMap<>();
+    /**
+     * 账号与已上传的头像内容摘要
+     */
+    private final Map<String, String> accounts = new ConcurrentHashMap<>();
+
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    /**
+     * 索引有未写入文件的变化
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public AvatarSync(AvatarConfig avatarConfig,
+                      TimeoutConfig timeoutConfig,
+                      BilibiliHttpClient httpClient,
+                      ObjectUploader objectUploader) {
+        this.avatarConfig = avatarConfig;
+        this.timeoutConfig = timeoutConfig;
+        this.httpClient = httpClient;
+        this.objectUploader = objectUploader;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "avatar-index-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void load() {
+        File index = new File(avatarConfig.getDir(), INDEX_FILE);
+        if (!index.exists()) {
+            return;
+        }
+        try {
+            JSONObject json = JSONUtil.readJSONObject(index, StandardCharsets.UTF_8);
+            JSONObject savedUrls = json.getJSONObject("urls");
+            if (savedUrls != null) {
+                savedUrls.forEach((url, blob) -> urls.put(url, JSONUtil.parseObj(blob).toBean(Blob.class)));
+            }
+            JSONObject savedAccounts = json.getJSONObject("accounts");
+            if (savedAccounts != null) {
+                savedAccounts.forEach((dedeuserid, hash) -> accounts.put(dedeuserid, String.valueOf(hash)));
+            }
+            log.info("已加载{}个头像地址, {}个账号的头像记录", urls.size(), accounts.size());
+        } catch (RuntimeException e) {
+            log.error("头像索引读取失败，将重新同步所有头像", e);
+        }
+    }
+
+    /**
+     * 同步账号头像，头像未变化时不下载也不上传，上传在后台完成，失败时只记录日志
+     *
+     * @param dedeuserid B站uid，对象存储中的文件名为uid.png
+     * @param faceUrl    头像地址
+     */
+    public void sync(String dedeuserid, String faceUrl) {
+        if (CharSequenceUtil.isBlank(faceUrl)) {
+            return;
+        }
+        try {
+            Blob blob = resolve(faceUrl);
+            if (blob.getHash().equals(accounts.get(dedeuserid))) {
+                unchanged.incrementAndGet();
+                return;
+            }
+            objectUploader.upload(dedeuserid + ".png", fileOf(blob), blob.getHash())
+                    .whenComplete((done, e) -> {
+                        if (e != null) {
+                            failed.incrementAndGet();
+                            log.error("头像上传失败: {}", e.getMessage());
+                        } else if (Boolean.TRUE.equals(done)) {
+                            uploaded.incrementAndGet();
+                            accounts.put(dedeuserid, blob.getHash());
+                            markDirty();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("头像同步失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取头像内容，已下载过的地址直接读取本地文件
+     *
+     * @param faceUrl 头像地址
+     * @return 头像内容
+     */
+    public byte[] read(String faceUrl) {
+        return FileUtil.readBytes(fileOf(resolve(faceUrl)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("urls", urls.size());
+        stats.put("accounts", accounts.size());
+        stats.put("unchanged", unchanged.get());
+        stats.put("notModified", notModified.get());
+        stats.put("downloaded", downloaded.get());
+        stats.put("written", written.get());
+        stats.put("uploaded", uploaded.get());
+        stats.put("failed", failed.get());
+        stats.put("flushes", flushes.get());
+        return stats;
+    }
+
+    /**
+     * 停止时写入尚未保存的索引
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+        flush();
+    }
+
+    /**
+     * 获取头像地址对应的本地内容，必要时下载
+     */
+    private Blob resolve(String faceUrl) {
+        Blob blob = urls.get(faceUrl);
+        if (blob == null || !fileOf(blob).exists()) {
+            return download(faceUrl, null);
+        }
+        if (System.currentTimeMillis() - blob.getCheckedAt() < avatarConfig.getRevalidateAfter().toMillis()) {
+            return blob;
+        }
+        return download(faceUrl, blob);
+    }
+
+    /**
+     * 下载头像，cached不为null时发送条件请求
+     */
+    private Blob download(String faceUrl, Blob cached) {
+        HttpGet httpGet = new HttpGet(faceUrl);
+        // 头像由CDN提供，不经过代理
+        int connectTimeout = (int) timeoutConfig.getConnect(null).toMillis();
+        httpGet.setConfig(RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout((int) timeoutConfig.getRead(null).toMillis())
+                .setConnectionRequestTimeout(connectTimeout)
+                .build());
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+
+        Download result;
+        try {
+            result = httpClient.executeForResponseAsync(httpGet, AvatarSync::readDownload).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw new IORuntimeException("头像下载失败: " + cause.getMessage(), cause);
+        }
+
+        long now = System.currentTimeMillis();
+        if (result == null) {
+            notModified.incrementAndGet();
+            Blob revalidated = cached.withCheckedAt(now);
+            urls.put(faceUrl, revalidated);
+            markDirty();
+            return revalidated;
+        }
+        downloaded.incrementAndGet();
+
+        String ext = FileNameUtil.extName(URLUtil.getPath(faceUrl));
+        Blob blob = new Blob();
+        blob.setHash(DigestUtil.sha256Hex(result.body));
+        blob.setFile(blob.getHash() + "." + (CharSequenceUtil.isBlank(ext) ? DEFAULT_EXT : ext));
+        blob.setEtag(result.etag);
+        blob.setLastModified(result.lastModified);
+        blob.setCheckedAt(now);
+        File file = fileOf(blob);
+        if (!file.exists()) {
+            write(file, result.body);
+            written.incrementAndGet();
+        }
+        urls.put(faceUrl, blob);
+        markDirty();
+        return blob;
+    }
+
+    /**
+     * @return 响应内容与校验头，304时为null
+     */
+    private static Download readDownload(HttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_MODIFIED) {
+            return null;
+        }
+        if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+            throw new IOException("响应状态码" + status);
+        }
+        Download download = new Download();
+        download.body = EntityUtils.toByteArray(response.getEntity());
+        download.etag = headerValue(response, HttpHeaders.ETAG);
+        download.lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+        return download;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private File fileOf(Blob blob) {
+        return new File(new File(avatarConfig.getDir(), OBJECTS_DIR), blob.getFile());
+    }
+
+    /**
+     * 先写入临时文件再重命名，避免其他线程读到不完整的文件
+     */
+    private static void write(File file, byte[] content) {
+        try {
+            FileUtil.mkParentDirs(file);
+            File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            FileUtil.writeBytes(content, tmp);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * 标记索引已变化，尚未安排写入时延迟写入
+     */
+    private void markDirty() {
+        if (dirty.compareAndSet(false, true)) {
+            try {
+                flushExecutor.schedule(this::flush, avatarConfig.getFlushDelay().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已停止，由shutdown写入
+            }
+        }
+    }
+
+    /**
+     * 写入索引，写入开始后的变化会安排下一次写入
+     */
+    private synchronized void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        JSONObject json = JSONUtil.createObj();
+        json.set("urls", urls);
+        json.set("accounts", accounts);
+        try {
+            write(new File(avatarConfig.getDir(), INDEX_FILE), json.toStringPretty().getBytes(StandardCharsets.UTF_8));
+            flushes.incrementAndGet();
+        } catch (IORuntimeException e) {
+            log.error("头像索引写入失败: {}", e.getMessage());
+            markDirty();
+        }
+    }
+
+    /**
+     * 一份头像内容
+     */
+    @Data
+    public static class Blob {
+        /**
+         * 内容的SHA-256
+         */
+        private String hash;
+        /**
+         * objects目录下的文件名
+         */
+        private String file;
+        private String etag;
+        private String lastModified;
+        /**
+         * 最近一次下载或确认未变化的时间
+         */
+        private long checkedAt;
+
+        Blob withCheckedAt(long checkedAt) {
+            Blob blob = new Blob();
+            blob.setHash(hash);
+            blob.setFile(file);
+            blob.setEtag(etag);
+            blob.setLastModified(lastModified);
+            blob.setCheckedAt(checkedAt);
+            return blob;
+        }
+    }
+
+    private static class Download {
+        private byte[] body;
+        private String etag;
+        private String lastModified;
+    }
+}
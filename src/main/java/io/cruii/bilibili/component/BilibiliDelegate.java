@@ -2,37 +2,58 @@ package io.cruii.bilibili.component;
 
 import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.io.IORuntimeException;
 import cn.hutool.core.text.CharSequenceUtil;
-import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.crypto.SecureUtil;
-import cn.hutool.http.Header;
-import cn.hutool.http.HttpException;
-import cn.hutool.http.HttpRequest;
+import cn.hutool.extra.spring.SpringUtil;
 import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
-import com.github.rholder.retry.*;
+import com.fasterxml.jackson.databind.JavaType;
+import io.cruii.bilibili.config.ProxyPoolConfig;
+import io.cruii.bilibili.config.TimeoutConfig;
 import io.cruii.bilibili.constant.BilibiliAPI;
 import io.cruii.bilibili.entity.BilibiliUser;
 import io.cruii.bilibili.entity.TaskConfig;
-import io.cruii.bilibili.util.CosUtil;
-import io.cruii.bilibili.util.ProxyUtil;
+import io.cruii.bilibili.exception.BilibiliApiUnavailableException;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.CoinCheck;
+import io.cruii.bilibili.model.GiftBag;
+import io.cruii.bilibili.model.LiveRoomInfo;
+import io.cruii.bilibili.model.MedalWall;
+import io.cruii.bilibili.model.NavInfo;
+import io.cruii.bilibili.model.SpaceInfo;
+import io.cruii.bilibili.model.TrendVideo;
+import io.cruii.bilibili.model.VideoDetails;
+import io.cruii.bilibili.util.ApiUrlTemplate;
+import io.cruii.bilibili.util.BilibiliJsonUtil;
+import io.cruii.bilibili.util.ThreadMdcUtil;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.http.MediaType;
+import org.slf4j.MDC;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.File;
-import java.io.InputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -46,25 +67,56 @@ public class BilibiliDelegate {
     @Getter
     private final TaskConfig config;
 
-    @Getter
-    private HttpRequest httpRequest;
-
-    private String proxyHost;
-    private Integer proxyPort;
-
-    private final Retryer<String> retryer = RetryerBuilder.<String>newBuilder()
-            .retryIfExceptionOfType(HttpException.class)
-            .retryIfExceptionOfType(IORuntimeException.class)
-            .withStopStrategy(StopStrategies.stopAfterAttempt(3))
-            .withRetryListener(new RetryListener() {
-                @Override
-                public <V> void onRetry(Attempt<V> attempt) {
-                    if (attempt.hasException()) {
-                        log.error("第{}次调用失败: {}, 进行重试", attempt.getAttemptNumber(), attempt.getExceptionCause().getMessage());
-                    }
-                }
-            })
-            .build();
+    private final BilibiliHttpClient httpClient = SpringUtil.getApplicationContext().getBean(BilibiliHttpClient.class);
+    private final ApiRateLimiter rateLimiter = SpringUtil.getApplicationContext().getBean(ApiRateLimiter.class);
+    private final ApiCircuitBreaker circuitBreaker = SpringUtil.getApplicationContext().getBean(ApiCircuitBreaker.class);
+    private final TaskPacer taskPacer = SpringUtil.getApplicationContext().getBean(TaskPacer.class);
+    private final RetryPolicy retryPolicy = SpringUtil.getApplicationContext().getBean(RetryPolicy.class);
+    private final RequestHedger requestHedger = SpringUtil.getApplicationContext().getBean(RequestHedger.class);
+    private final TimeoutConfig timeoutConfig = SpringUtil.getApplicationContext().getBean(TimeoutConfig.class);
+    private final TrendVideoCache trendVideoCache = SpringUtil.getApplicationContext().getBean(TrendVideoCache.class);
+    private final VideoDetailsCache videoDetailsCache = SpringUtil.getApplicationContext().getBean(VideoDetailsCache.class);
+    private final TargetInfoCache targetInfoCache = SpringUtil.getApplicationContext().getBean(TargetInfoCache.class);
+    private final ProxyPool proxyPool = SpringUtil.getApplicationContext().getBean(ProxyPool.class);
+    private final AvatarSync avatarSync = SpringUtil.getApplicationContext().getBean(AvatarSync.class);
+    private final ProxyPoolConfig proxyPoolConfig = SpringUtil.getApplicationContext().getBean(ProxyPoolConfig.class);
+
+    /**
+     * 账号的Cookie与UA等请求头，创建后不再变化
+     */
+    private final RequestTemplate requestTemplate;
+
+    /**
+     * 当前使用的代理及其请求配置，切换代理时整体替换
+     */
+    private volatile ProxyRoute route = ProxyRoute.DIRECT;
+
+    /**
+     * 当前代理连续失败或被限流的次数
+     */
+    private final AtomicInteger proxyErrors = new AtomicInteger();
+
+    /**
+     * 账号本次执行的截止时间，{@link System#nanoTime()}，为null时不限制
+     */
+    private volatile Long deadlineNanos;
+
+    /**
+     * 请求被拦截、请求过于频繁等限流响应码
+     */
+    private static final List<Integer> THROTTLED_CODES = Arrays.asList(-412, -509, -799);
+
+    /**
+     * 高频接口的响应类型，由 {@link BilibiliJsonUtil} 直接绑定，不经过 {@link JSONObject}
+     */
+    private static final JavaType NAV_RESPONSE = BilibiliJsonUtil.responseOf(NavInfo.class);
+    private static final JavaType MEDAL_WALL_RESPONSE = BilibiliJsonUtil.responseOf(MedalWall.class);
+    private static final JavaType TREND_VIDEO_RESPONSE = BilibiliJsonUtil.responseOfList(TrendVideo.class);
+    private static final JavaType COIN_CHECK_RESPONSE = BilibiliJsonUtil.responseOf(CoinCheck.class);
+    private static final JavaType VIDEO_DETAILS_RESPONSE = BilibiliJsonUtil.responseOf(VideoDetails.class);
+    private static final JavaType GIFT_BAG_RESPONSE = BilibiliJsonUtil.responseOf(GiftBag.class);
+    private static final JavaType SPACE_INFO_RESPONSE = BilibiliJsonUtil.responseOf(SpaceInfo.class);
+    private static final JavaType LIVE_ROOM_INFO_RESPONSE = BilibiliJsonUtil.responseOf(LiveRoomInfo.class);
 
     public BilibiliDelegate(String dedeuserid, String sessdata, String biliJct) {
         TaskConfig taskConfig = new TaskConfig();
@@ -73,6 +125,7 @@ public class BilibiliDelegate {
         taskConfig.setBiliJct(biliJct);
         taskConfig.setUserAgent(UA);
         this.config = taskConfig;
+        this.requestTemplate = new RequestTemplate(taskConfig);
     }
 
     public BilibiliDelegate(TaskConfig config) {
@@ -80,18 +133,71 @@ public class BilibiliDelegate {
         if (CharSequenceUtil.isBlank(config.getUserAgent())) {
             config.setUserAgent(UA);
         }
+        this.requestTemplate = new RequestTemplate(config);
         changeProxy();
     }
 
+    /**
+     * 设置账号本次执行的总时长，超过后不再发起新的请求
+     *
+     * @param timeout 总时长
+     */
+    public void setDeadline(Duration timeout) {
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * 从 {@link ProxyPool} 取一个代理，本次执行期间一直使用，
+     * 只有连续失败或代理失效时才会切换，代理池为空或未启用代理时直连
+     */
     public void changeProxy() {
-        String proxy = ProxyUtil.get();
+        setProxy(proxyPool.acquire());
+    }
 
-        setProxy(proxy);
+    /**
+     * 切换代理，并发的请求同时发现问题时只切换一次
+     *
+     * @param from   发现问题时使用的代理
+     * @param reason 切换原因
+     */
+    private synchronized void rotateProxy(ProxyRoute from, String reason) {
+        if (route != from) {
+            return;
+        }
+        setProxy(proxyPool.acquire(from.proxy));
+        proxyErrors.set(0);
+        log.info("代理[{}]{}，切换为[{}]", from.proxy == null ? "直连" : from.proxy, reason,
+                route.proxy == null ? "直连" : route.proxy);
+    }
+
+    /**
+     * 当前代理已过期或已被代理池移除时先切换
+     */
+    private ProxyRoute currentRoute() {
+        ProxyRoute current = route;
+        if (current.proxy != null && !proxyPool.isAvailable(current.proxy)) {
+            rotateProxy(current, "已失效");
+            current = route;
+        }
+        return current;
+    }
+
+    /**
+     * 记录一次归咎于代理的失败，连续达到 {@link ProxyPoolConfig#getRotateAfter()} 次后切换代理
+     */
+    private void onProxyError(ProxyRoute from) {
+        if (proxyPool.isEnabled() && proxyErrors.incrementAndGet() >= proxyPoolConfig.getRotateAfter()) {
+            rotateProxy(from, "连续失败" + proxyErrors.get() + "次");
+        }
     }
 
     private void setProxy(String proxy) {
-        this.proxyHost = proxy.split(":")[0];
-        this.proxyPort = Integer.parseInt(proxy.split(":")[1]);
+        if (proxy == null) {
+            this.route = ProxyRoute.DIRECT;
+            return;
+        }
+        String[] hostAndPort = proxy.split(":");
+        this.route = new ProxyRoute(proxy, new HttpHost(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
     }
 
     /**
@@ -100,12 +206,18 @@ public class BilibiliDelegate {
      * @return B站用户信息 {@link BilibiliUser}
      */
     public BilibiliUser getUser() {
-        JSONObject resp = doGet(BilibiliAPI.GET_USER_INFO_NAV);
+        // 勋章墙与导航栏信息互不依赖，同时请求
+        CompletableFuture<BilibiliResponse<MedalWall>> medalWallFuture = getMedalWallAsync();
+        BilibiliResponse<NavInfo> resp = await(getNavAsync());
 
-        // 解析响应信息
-        JSONObject data = resp.getJSONObject("data");
+        // 解析响应信息，Cookie失效时响应码为-101，data中isLogin为false
+        NavInfo data = resp.getData();
         // 是否登录成功
-        Boolean isLogin = data.getBool("isLogin");
+        Boolean isLogin = data == null ? null : data.getIsLogin();
+        if (!resp.isSuccess() && !Boolean.FALSE.equals(isLogin)) {
+            log.error("获取用户信息失败: {}({})", resp.getMessage(), resp.getCode());
+            throw new BilibiliApiUnavailableException("GET_USER_INFO_NAV", resp.getMessage() + "(" + resp.getCode() + ")");
+        }
 
         if (Boolean.FALSE.equals(isLogin)) {
             log.warn("账号Cookie已失效, {}, {}", config.getDedeuserid(), config.getSessdata());
@@ -115,51 +227,41 @@ public class BilibiliDelegate {
         }
 
         // 登录成功，获取详细信息
-        // 获取头像
-        InputStream avatarStream = getAvatarStream(data.getStr("face"));
-        String path = "avatars" + File.separator + config.getDedeuserid() + ".png";
-        File avatarFile = new File(path);
-        if (avatarFile.exists()) {
-            String localMd5 = SecureUtil.md5(avatarFile);
-            String remoteMd5 = SecureUtil.md5(avatarStream);
-            if (!localMd5.equals(remoteMd5)) {
-                FileUtil.writeFromStream(avatarStream, avatarFile);
-            }
-        } else {
-            FileUtil.writeFromStream(avatarStream, avatarFile);
-        }
-
-        // 上传到 oss
-        CosUtil.upload(avatarFile);
+        // 同步头像，头像未变化时不下载也不上传
+        avatarSync.sync(config.getDedeuserid(), data.getFace());
 
-        String uname = data.getStr("uname");
+        String uname = data.getUname();
         // 获取硬币数
-        String coins = data.getStr("money");
+        String coins = data.getMoney() == null ? null : data.getMoney().toPlainString();
 
         // 获取大会员信息
-        JSONObject vip = data.getJSONObject("vip");
+        NavInfo.Vip vip = data.getVip();
 
         // 获取等级信息
-        JSONObject levelInfo = data.getJSONObject("level_info");
-        Integer currentLevel = levelInfo.getInt("current_level");
+        NavInfo.LevelInfo levelInfo = data.getLevelInfo();
+        Integer currentLevel = levelInfo.getCurrentLevel();
 
         // 获取勋章墙
-        JSONObject medalWallResp = getMedalWall();
-        List<JSONObject> medals = medalWallResp.getJSONObject("data")
-                .getJSONArray("list")
+        BilibiliResponse<MedalWall> medalWallResp = await(medalWallFuture);
+        List<MedalWall.Medal> medalList = medalWallResp.isSuccess() && medalWallResp.getData() != null &&
+                medalWallResp.getData().getList() != null ? medalWallResp.getData().getList() : Collections.emptyList();
+        if (!medalWallResp.isSuccess()) {
+            log.error("获取勋章墙失败: {}", medalWallResp.getMessage());
+        }
+        List<JSONObject> medals = medalList
                 .stream()
-                .map(JSONUtil::parseObj)
-                .map(medalObj -> {
+                .map(MedalWall.Medal::getMedalInfo)
+                .sorted((o1, o2) -> o2.getLevel() - o1.getLevel())
+                .limit(2L)
+                .map(medalInfo -> {
                     JSONObject medal = JSONUtil.createObj();
-                    medal.set("name", medalObj.getByPath("medal_info.medal_name", String.class));
-                    medal.set("level", medalObj.getByPath("medal_info.level", Integer.class));
-                    medal.set("colorStart", medalObj.getByPath("medal_info.medal_color_start", Integer.class));
-                    medal.set("colorEnd", medalObj.getByPath("medal_info.medal_color_end", Integer.class));
-                    medal.set("colorBorder", medalObj.getByPath("medal_info.medal_color_border", Integer.class));
+                    medal.set("name", medalInfo.getMedalName());
+                    medal.set("level", medalInfo.getLevel());
+                    medal.set("colorStart", medalInfo.getMedalColorStart());
+                    medal.set("colorEnd", medalInfo.getMedalColorEnd());
+                    medal.set("colorBorder", medalInfo.getMedalColorBorder());
                     return medal;
                 })
-                .sorted((o1, o2) -> o2.getInt("level") - o1.getInt("level"))
-                .limit(2L)
                 .collect(Collectors.toList());
 
         BilibiliUser info = new BilibiliUser();
@@ -167,11 +269,11 @@ public class BilibiliDelegate {
         info.setUsername(uname);
         info.setCoins(coins);
         info.setLevel(currentLevel);
-        info.setCurrentExp(levelInfo.getInt("current_exp"));
-        info.setNextExp(currentLevel == 6 ? 0 : levelInfo.getInt("next_exp"));
+        info.setCurrentExp(levelInfo.getCurrentExp());
+        info.setNextExp(currentLevel == 6 ? 0 : Integer.parseInt(levelInfo.getNextExp()));
         info.setMedals(JSONUtil.toJsonStr(medals));
-        info.setVipType(vip.getInt("type"));
-        info.setVipStatus(vip.getInt("status"));
+        info.setVipType(vip.getType());
+        info.setVipStatus(vip.getStatus());
         info.setIsLogin(true);
 
         return info;
@@ -184,29 +286,15 @@ public class BilibiliDelegate {
      * @return B站用户信息 {@link BilibiliUser}
      */
     public BilibiliUser getUser(String userId) {
-        String body = HttpRequest.get(BilibiliAPI.GET_USER_SPACE_INFO + "?mid=" + userId).execute().body();
-
-        JSONObject resp = JSONUtil.parseObj(body);
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("mid", userId);
+        JSONObject resp = doGet(BilibiliAPI.GET_USER_SPACE_INFO, params);
         JSONObject baseInfo = resp.getJSONObject("data");
         if (resp.getInt("code") == -404 || baseInfo == null) {
             log.error("用户[{}]不存在", userId);
             return null;
         }
-        InputStream avatarStream = getAvatarStream(baseInfo.getStr("face"));
-        String path = "avatars" + File.separator + config.getDedeuserid() + ".png";
-        File avatarFile = new File(path);
-        if (avatarFile.exists()) {
-            String localMd5 = SecureUtil.md5(avatarFile);
-            String remoteMd5 = SecureUtil.md5(avatarStream);
-            if (!localMd5.equals(remoteMd5)) {
-                FileUtil.writeFromStream(avatarStream, avatarFile);
-            }
-        } else {
-            FileUtil.writeFromStream(avatarStream, avatarFile);
-        }
-
-        // 上传到 oss
-        CosUtil.upload(avatarFile);
+        avatarSync.sync(config.getDedeuserid(), baseInfo.getStr("face"));
 
         BilibiliUser info = new BilibiliUser();
         info.setDedeuserid(userId);
@@ -217,24 +305,70 @@ public class BilibiliDelegate {
         return info;
     }
 
+    /**
+     * 获取充电、送礼对象的基本信息，结果在所有账号间共享缓存
+     *
+     * @param userId B站uid
+     * @return B站用户信息 {@link BilibiliUser}，用户不存在或查询失败时为null
+     */
+    public BilibiliUser getTargetUser(String userId) {
+        Optional<SpaceInfo> spaceInfo;
+        try {
+            spaceInfo = await(targetInfoCache.getSpaceInfo(userId, this::getSpaceInfoAsync));
+        } catch (IllegalStateException e) {
+            log.error("用户[{}]{}", userId, e.getMessage());
+            return null;
+        }
+        if (!spaceInfo.isPresent()) {
+            log.error("用户[{}]不存在", userId);
+            return null;
+        }
+        BilibiliUser info = new BilibiliUser();
+        info.setDedeuserid(userId);
+        info.setUsername(spaceInfo.get().getName());
+        info.setLevel(spaceInfo.get().getLevel());
+        info.setIsLogin(false);
+        return info;
+    }
+
+    private CompletableFuture<BilibiliResponse<SpaceInfo>> getSpaceInfoAsync(String userId) {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.put("mid", CollUtil.newArrayList(userId));
+
+        return doGetAsync(BilibiliAPI.GET_USER_SPACE_INFO, params, SPACE_INFO_RESPONSE);
+    }
+
     /**
      * 获取勋章墙
      *
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 勋章墙 {@link MedalWall}
      */
-    public JSONObject getMedalWall() {
+    public BilibiliResponse<MedalWall> getMedalWall() {
+        return await(getMedalWallAsync());
+    }
+
+    /**
+     * 异步获取勋章墙
+     *
+     * @return 勋章墙 {@link MedalWall}
+     */
+    public CompletableFuture<BilibiliResponse<MedalWall>> getMedalWallAsync() {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("target_id", CollUtil.newArrayList(config.getDedeuserid()));
-        return doGet(BilibiliAPI.GET_MEDAL_WALL, params);
+        return doGetAsync(BilibiliAPI.GET_MEDAL_WALL, params, MEDAL_WALL_RESPONSE);
     }
 
     /**
      * 检查Cookie有效性
      *
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 导航栏用户信息 {@link NavInfo}
      */
-    public JSONObject checkCookie() {
-        return doGet(BilibiliAPI.GET_USER_INFO_NAV, null);
+    public BilibiliResponse<NavInfo> checkCookie() {
+        return await(getNavAsync());
+    }
+
+    private CompletableFuture<BilibiliResponse<NavInfo>> getNavAsync() {
+        return doGetAsync(BilibiliAPI.GET_USER_INFO_NAV, null, NAV_RESPONSE);
     }
 
     /**
@@ -243,7 +377,16 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getCoinChangeLog() {
-        return doGet(BilibiliAPI.GET_COIN_CHANGE_LOG);
+        return await(getCoinChangeLogAsync());
+    }
+
+    /**
+     * 异步查询硬币变化情况
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getCoinChangeLogAsync() {
+        return doGetAsync(BilibiliAPI.GET_COIN_CHANGE_LOG);
     }
 
     /**
@@ -252,7 +395,16 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getExpRewardStatus() {
-        return doGet(BilibiliAPI.GET_EXP_REWARD_STATUS);
+        return await(getExpRewardStatusAsync());
+    }
+
+    /**
+     * 异步查询每日奖励状态
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getExpRewardStatusAsync() {
+        return doGetAsync(BilibiliAPI.GET_EXP_REWARD_STATUS);
     }
 
     /**
@@ -261,27 +413,56 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getFollowedUpPostVideo() {
+        return await(getFollowedUpPostVideoAsync());
+    }
+
+    /**
+     * 异步获取已关注的UP最近发布的视频的BVID
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getFollowedUpPostVideoAsync() {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("uid", CollUtil.newArrayList(config.getDedeuserid()));
         params.put("type_list", CollUtil.newArrayList("8"));
         params.put("from", CollUtil.newArrayList());
         params.put("platform", CollUtil.newArrayList("web"));
 
-        return doGet(BilibiliAPI.GET_FOLLOWED_UP_POST_VIDEO, params);
+        return doGetAsync(BilibiliAPI.GET_FOLLOWED_UP_POST_VIDEO, params);
     }
 
     /**
      * 根据分区ID获取3日热榜视频
      *
      * @param regionId 分区ID
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 热榜视频 {@link TrendVideo}
      */
-    public JSONObject getTrendVideo(String regionId) {
+    public BilibiliResponse<List<TrendVideo>> getTrendVideo(String regionId) {
+        return await(getTrendVideoAsync(regionId));
+    }
+
+    /**
+     * 异步根据分区ID获取3日热榜视频
+     *
+     * @param regionId 分区ID
+     * @return 热榜视频 {@link TrendVideo}
+     */
+    public CompletableFuture<BilibiliResponse<List<TrendVideo>>> getTrendVideoAsync(String regionId) {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("rid", CollUtil.newArrayList(regionId));
         params.put("day", CollUtil.newArrayList("3"));
 
-        return doGet(BilibiliAPI.GET_TREND_VIDEO, params);
+        return doGetAsync(BilibiliAPI.GET_TREND_VIDEO, params, TREND_VIDEO_RESPONSE);
+    }
+
+    /**
+     * 从共享缓存中获取分区3日热榜视频的BVID，缓存未命中时使用当前账号请求
+     *
+     * @param regionId 分区ID
+     * @return 热榜视频的BVID，不可修改
+     */
+    public CompletableFuture<List<String>> listTrendVideosAsync(String regionId) {
+        return trendVideoCache.get(regionId, this::getTrendVideoAsync);
     }
 
     /**
@@ -333,19 +514,42 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getCoinExpToday() {
-        return doGet(BilibiliAPI.GET_COIN_EXP_TODAY);
+        return await(getCoinExpTodayAsync());
+    }
+
+    /**
+     * 异步获取今日通过投币获得的经验值
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getCoinExpTodayAsync() {
+        return doGetAsync(BilibiliAPI.GET_COIN_EXP_TODAY);
     }
 
     /**
      * 获取视频详细信息
      *
      * @param bvid 视频BVID
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 视频详情 {@link VideoDetails}
+     */
+    public BilibiliResponse<VideoDetails> getVideoDetails(String bvid) {
+        return await(getVideoDetailsAsync(bvid));
+    }
+
+    /**
+     * 异步获取视频详细信息，优先从共享缓存中读取，返回的对象不可修改
+     *
+     * @param bvid 视频BVID
+     * @return 视频详情 {@link VideoDetails}
      */
-    public JSONObject getVideoDetails(String bvid) {
+    public CompletableFuture<BilibiliResponse<VideoDetails>> getVideoDetailsAsync(String bvid) {
+        return videoDetailsCache.get(bvid, this::loadVideoDetailsAsync);
+    }
+
+    private CompletableFuture<BilibiliResponse<VideoDetails>> loadVideoDetailsAsync(String bvid) {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("bvid", CollUtil.newArrayList(bvid));
-        return doGet(BilibiliAPI.GET_VIDEO_DETAILS, params);
+        return doGetAsync(BilibiliAPI.GET_VIDEO_DETAILS, params, VIDEO_DETAILS_RESPONSE);
     }
 
     /**
@@ -354,7 +558,16 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getCoin() {
-        return doGet(BilibiliAPI.GET_COIN);
+        return await(getCoinAsync());
+    }
+
+    /**
+     * 异步获取硬币账户余额
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getCoinAsync() {
+        return doGetAsync(BilibiliAPI.GET_COIN);
     }
 
 
@@ -362,12 +575,22 @@ public class BilibiliDelegate {
      * 判断视频是否被投币
      *
      * @param bvid 视频的bvid
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 投币状态 {@link CoinCheck}
      */
-    public JSONObject checkDonateCoin(String bvid) {
+    public BilibiliResponse<CoinCheck> checkDonateCoin(String bvid) {
+        return await(checkDonateCoinAsync(bvid));
+    }
+
+    /**
+     * 异步判断视频是否被投币
+     *
+     * @param bvid 视频的bvid
+     * @return 投币状态 {@link CoinCheck}
+     */
+    public CompletableFuture<BilibiliResponse<CoinCheck>> checkDonateCoinAsync(String bvid) {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("bvid", CollUtil.newArrayList(bvid));
-        return doGet(BilibiliAPI.CHECK_DONATE_COIN, params);
+        return doGetAsync(BilibiliAPI.CHECK_DONATE_COIN, params, COIN_CHECK_RESPONSE);
     }
 
     /**
@@ -399,7 +622,16 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getLiveWallet() {
-        return doGet(BilibiliAPI.BILI_LIVE_WALLET);
+        return await(getLiveWalletAsync());
+    }
+
+    /**
+     * 异步获取直播间钱包
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getLiveWalletAsync() {
+        return doGetAsync(BilibiliAPI.BILI_LIVE_WALLET);
     }
 
     /**
@@ -428,23 +660,57 @@ public class BilibiliDelegate {
     /**
      * 获取背包中的礼物
      *
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 背包 {@link GiftBag}
+     */
+    public BilibiliResponse<GiftBag> listGifts() {
+        return await(listGiftsAsync());
+    }
+
+    /**
+     * 异步获取背包中的礼物
+     *
+     * @return 背包 {@link GiftBag}
      */
-    public JSONObject listGifts() {
-        return doGet(BilibiliAPI.LIST_GIFTS);
+    public CompletableFuture<BilibiliResponse<GiftBag>> listGiftsAsync() {
+        return doGetAsync(BilibiliAPI.LIST_GIFTS, null, GIFT_BAG_RESPONSE);
     }
 
     /**
      * 获取直播间信息
      *
      * @param userId 主播id
-     * @return 解析后的JSON对象 {@link JSONObject}
+     * @return 直播间信息 {@link LiveRoomInfo}
+     */
+    public BilibiliResponse<LiveRoomInfo> getLiveRoomInfo(String userId) {
+        return await(getLiveRoomInfoAsync(userId));
+    }
+
+    /**
+     * 异步获取直播间信息
+     *
+     * @param userId 主播id
+     * @return 直播间信息 {@link LiveRoomInfo}
      */
-    public JSONObject getLiveRoomInfo(String userId) {
+    public CompletableFuture<BilibiliResponse<LiveRoomInfo>> getLiveRoomInfoAsync(String userId) {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("mid", CollUtil.newArrayList(userId));
 
-        return doGet(BilibiliAPI.GET_LIVE_ROOM_INFO, params);
+        return doGetAsync(BilibiliAPI.GET_LIVE_ROOM_INFO, params, LIVE_ROOM_INFO_RESPONSE);
+    }
+
+    /**
+     * 获取用户的直播间号，结果在所有账号间共享缓存
+     *
+     * @param userId 主播id
+     * @return 直播间号，用户没有直播间或查询失败时为null
+     */
+    public String getLiveRoomId(String userId) {
+        try {
+            return await(targetInfoCache.getRoomId(userId, this::getLiveRoomInfoAsync)).orElse(null);
+        } catch (IllegalStateException e) {
+            log.error("用户[{}]{}", userId, e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -483,10 +749,19 @@ public class BilibiliDelegate {
      * @return 解析后的JSON对象 {@link JSONObject}
      */
     public JSONObject getChargeInfo() {
+        return await(getChargeInfoAsync());
+    }
+
+    /**
+     * 异步获取充电信息
+     *
+     * @return 解析后的JSON对象 {@link JSONObject}
+     */
+    public CompletableFuture<JSONObject> getChargeInfoAsync() {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("mid", CollUtil.newArrayList(config.getDedeuserid()));
 
-        return doGet(BilibiliAPI.GET_CHARGE_INFO, params);
+        return doGetAsync(BilibiliAPI.GET_CHARGE_INFO, params);
     }
 
     /**
@@ -583,23 +858,8 @@ public class BilibiliDelegate {
     }
 
     public String getAvatar() {
-        JSONObject resp = doGet(BilibiliAPI.GET_USER_INFO_NAV);
-        // 解析响应信息
-        JSONObject data = resp.getJSONObject("data");
-        InputStream avatarStream = getAvatarStream(data.getStr("face"));
-        return Base64.encode(avatarStream);
-    }
-
-    /**
-     * 获取B站用户头像文件流
-     *
-     * @param avatarUrl 头像地址
-     * @return 头像文件流
-     */
-    private InputStream getAvatarStream(String avatarUrl) {
-        return HttpRequest
-                .get(avatarUrl)
-                .execute().bodyStream();
+        BilibiliResponse<NavInfo> resp = await(getNavAsync());
+        return Base64.encode(avatarSync.read(resp.getData().getFace()));
     }
 
     /**
@@ -632,6 +892,14 @@ public class BilibiliDelegate {
         return doGet(url, null);
     }
 
+    private JSONObject doGet(String url, MultiValueMap<String, String> params) {
+        return await(doGetAsync(url, params));
+    }
+
+    private CompletableFuture<JSONObject> doGetAsync(String url) {
+        return doGetAsync(url, null);
+    }
+
     /**
      * 实际处理B站API访问
      *
@@ -639,23 +907,28 @@ public class BilibiliDelegate {
      * @param params 查询字符串参数 {@link MultiValueMap}
      * @return 解析后的JSON对象 {@link JSONObject}
      */
-    private JSONObject doGet(String url, MultiValueMap<String, String> params) {
-        url = UriComponentsBuilder.fromHttpUrl(url)
-                .queryParams(params)
-                .build().toUriString();
-        httpRequest = HttpRequest.get(url)
-                .timeout(100000)
-                .header(Header.CONNECTION, "keep-alive")
-                .header(Header.USER_AGENT, config.getUserAgent())
-                .cookie("bili_jct=" + config.getBiliJct() +
-                        ";SESSDATA=" + config.getSessdata() +
-                        ";DedeUserID=" + config.getDedeuserid() + ";");
-
-        if (!ObjectUtil.hasNull(proxyHost, proxyPort)) {
-            httpRequest.setHttpProxy(proxyHost, proxyPort);
-        }
+    private CompletableFuture<JSONObject> doGetAsync(String url, MultiValueMap<String, String> params) {
+        ApiUrlTemplate api = ApiUrlTemplate.of(url);
+        return retryableCall(get(api, params), api.getEndpoint());
+    }
 
-        return retryableCall(httpRequest);
+    /**
+     * 访问B站API并将响应绑定为指定类型
+     *
+     * @param url    访问API地址
+     * @param params 查询字符串参数 {@link MultiValueMap}
+     * @param type   响应类型，见 {@link BilibiliJsonUtil#responseOf(Class)}
+     * @return 绑定后的响应
+     */
+    private <T> CompletableFuture<BilibiliResponse<T>> doGetAsync(String url, MultiValueMap<String, String> params,
+                                                                  JavaType type) {
+        ApiUrlTemplate api = ApiUrlTemplate.of(url);
+        return retryableCall(get(api, params), api.getEndpoint(),
+                body -> BilibiliJsonUtil.bind(body, type), BilibiliResponse::getCode);
+    }
+
+    private HttpGet get(ApiUrlTemplate api, MultiValueMap<String, String> params) {
+        return requestTemplate.get(api.expand(params), requestConfig(api.getEndpoint()));
     }
 
     private JSONObject doPost(String url, String requestBody) {
@@ -663,34 +936,243 @@ public class BilibiliDelegate {
     }
 
     private JSONObject doPost(String url, String requestBody, Map<String, String> headers) {
-        httpRequest = HttpRequest.post(url)
-                .timeout(10000)
-                .header(Header.CONTENT_TYPE, JSONUtil.isJson(requestBody) ?
-                        MediaType.APPLICATION_JSON_VALUE : MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-                .header(Header.CONNECTION, "keep-alive")
-                .header(Header.USER_AGENT, config.getUserAgent())
-                .header(Header.REFERER, "https://www.bilibili.com/")
-                .addHeaders(headers)
-                .cookie("bili_jct=" + config.getBiliJct() +
-                        ";SESSDATA=" + config.getSessdata() +
-                        ";DedeUserID=" + config.getDedeuserid() + ";");
-        if (!ObjectUtil.hasNull(proxyHost, proxyPort)) {
-            httpRequest.setHttpProxy(proxyHost, proxyPort);
+        return await(doPostAsync(url, requestBody, headers));
+    }
+
+    private CompletableFuture<JSONObject> doPostAsync(String url, String requestBody, Map<String, String> headers) {
+        String endpoint = ApiUrlTemplate.of(url).getEndpoint();
+        HttpPost httpPost = requestTemplate.post(url, requestBody, headers, requestConfig(endpoint));
+        return retryableCall(httpPost, endpoint);
+    }
+
+    /**
+     * 请求超时与代理设置，同一代理的连接在连接池中复用。
+     * 同一代理下每个接口只创建一次，切换代理后重新创建
+     *
+     * @param endpoint 接口名，超时时长见 {@link TimeoutConfig}
+     */
+    private RequestConfig requestConfig(String endpoint) {
+        return requestConfig(route, endpoint);
+    }
+
+    private RequestConfig requestConfig(ProxyRoute current, String endpoint) {
+        return current.requestConfigs.computeIfAbsent(endpoint == null ? "" : endpoint,
+                key -> buildRequestConfig(endpoint, current.host));
+    }
+
+    private RequestConfig buildRequestConfig(String endpoint, HttpHost proxy) {
+        int connectTimeout = (int) timeoutConfig.getConnect(endpoint).toMillis();
+        RequestConfig.Builder builder = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout((int) timeoutConfig.getRead(endpoint).toMillis())
+                .setConnectionRequestTimeout(connectTimeout);
+        if (proxy != null) {
+            builder.setProxy(proxy);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 异步调用接口，失败或返回可重试的响应码时由 {@link RetryPolicy} 决定是否延迟重试，重试期间不占用调用线程。
+     * 每次发送前经过 {@link ApiRateLimiter} 预约，需要等待时由调度器延迟发送
+     *
+     * @param request  请求
+     * @param endpoint 接口名，不是B站API时为null
+     * @return 解析后的JSON对象，熔断或重试次数用尽时以 {@link BilibiliApiUnavailableException} 异常完成
+     */
+    private CompletableFuture<JSONObject> retryableCall(HttpUriRequest request, String endpoint) {
+        return retryableCall(request, endpoint, JSONUtil::parseObj, resp -> resp.getInt("code"));
+    }
+
+    /**
+     * 异步调用接口，按指定方式解析响应
+     *
+     * @param request  请求
+     * @param endpoint 接口名，不是B站API时为null
+     * @param parser   响应内容的解析方法
+     * @param codeOf   读取解析结果中的响应码
+     * @return 解析结果
+     */
+    private <T> CompletableFuture<T> retryableCall(HttpUriRequest request, String endpoint,
+                                                   Function<String, T> parser, Function<T, Integer> codeOf) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(request, endpoint, 1, System.nanoTime(), MDC.getCopyOfContextMap(), parser, codeOf, result);
+        return result;
+    }
+
+    private <T> void attempt(HttpUriRequest request, String endpoint, int attemptNumber, long startNanos,
+                             Map<String, String> context, Function<String, T> parser, Function<T, Integer> codeOf,
+                             CompletableFuture<T> result) {
+        ProxyRoute current = currentRoute();
+        String proxy = current.proxy;
+        Long deadline = deadlineNanos;
+        if (deadline != null && System.nanoTime() - deadline >= 0) {
+            result.completeExceptionally(new BilibiliApiUnavailableException(String.valueOf(endpoint), "账号执行超时"));
+            return;
+        }
+        if (!circuitBreaker.tryAcquire(proxy)) {
+            result.completeExceptionally(new BilibiliApiUnavailableException(String.valueOf(endpoint), "代理[" + proxy + "]已熔断"));
+            return;
+        }
+        if (!circuitBreaker.tryAcquire(endpoint)) {
+            circuitBreaker.release(proxy);
+            result.completeExceptionally(new BilibiliApiUnavailableException(endpoint, "接口已熔断"));
+            return;
+        }
+        applyRoute(request, current, endpoint);
+        long delay = rateLimiter.reserve(endpoint, proxy);
+        CompletableFuture<String> response = delay > 0 ?
+                taskPacer.delay(Duration.ofNanos(delay)).thenCompose(v -> send(request, endpoint, proxy)) :
+                send(request, endpoint, proxy);
+        response.whenComplete((body, e) -> ThreadMdcUtil.wrap(() -> {
+            if (e == null) {
+                // 代理已正常转发响应
+                circuitBreaker.onSuccess(proxy);
+                T resp;
+                try {
+                    resp = parser.apply(body);
+                } catch (RuntimeException ex) {
+                    // 验证码、WAF页面等非预期的响应内容，按读取失败处理
+                    circuitBreaker.onFailure(endpoint);
+                    IOException cause = new IOException("响应内容无法解析: " + ex.getMessage(), ex);
+                    long backoff = retryPolicy.onError(endpoint, attemptNumber, startNanos, cause);
+                    if (backoff >= 0) {
+                        log.warn("第{}次调用接口[{}]的响应无法解析, {}毫秒后重试", attemptNumber, endpoint, backoff);
+                        retry(request, endpoint, attemptNumber, startNanos, context, parser, codeOf, result, backoff);
+                        return;
+                    }
+                    result.completeExceptionally(new BilibiliApiUnavailableException(String.valueOf(endpoint), cause.getMessage()));
+                    return;
+                }
+                circuitBreaker.onSuccess(endpoint);
+                Integer code = codeOf.apply(resp);
+                if (THROTTLED_CODES.contains(code)) {
+                    rateLimiter.onThrottled(endpoint, proxy);
+                    proxyPool.onThrottled(proxy);
+                    onProxyError(current);
+                } else {
+                    rateLimiter.onSuccess(endpoint, proxy);
+                    proxyErrors.set(0);
+                }
+                long backoff = retryPolicy.onResponse(endpoint, attemptNumber, startNanos, code);
+                if (backoff >= 0) {
+                    log.warn("第{}次调用接口[{}]返回{}, {}毫秒后重试", attemptNumber, endpoint, code, backoff);
+                    retry(request, endpoint, attemptNumber, startNanos, context, parser, codeOf, result, backoff);
+                    return;
+                }
+                result.complete(resp);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (onFailure(endpoint, proxy, cause)) {
+                onProxyError(current);
+            }
+            long backoff = retryPolicy.onError(endpoint, attemptNumber, startNanos, cause);
+            if (backoff >= 0) {
+                log.error("第{}次调用失败: {}, {}毫秒后重试", attemptNumber, cause.getMessage(), backoff);
+                retry(request, endpoint, attemptNumber, startNanos, context, parser, codeOf, result, backoff);
+                return;
+            }
+            log.error("调用接口[{}]失败, 共尝试{}次, {}", request.getURI(), attemptNumber, cause.getMessage());
+            result.completeExceptionally(new BilibiliApiUnavailableException(String.valueOf(endpoint), cause.getMessage()));
+        }, context).run());
+    }
+
+    private <T> void retry(HttpUriRequest request, String endpoint, int attemptNumber, long startNanos,
+                           Map<String, String> context, Function<String, T> parser, Function<T, Integer> codeOf,
+                           CompletableFuture<T> result, long backoff) {
+        taskPacer.delay(Duration.ofMillis(backoff)).whenComplete((v, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            attempt(request, endpoint, attemptNumber + 1, startNanos, context, parser, codeOf, result);
+        });
+    }
+
+    /**
+     * 发送请求，代理转发响应后记录耗时
+     */
+    private CompletableFuture<String> send(HttpUriRequest request, String endpoint, String proxy) {
+        long start = System.nanoTime();
+        return requestHedger.executeAsync(request, endpoint, proxy).whenComplete((body, e) -> {
+            if (e == null) {
+                proxyPool.onResponse(proxy, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    /**
+     * 请求在代理切换前创建，或重试前已切换代理时，改用当前代理的请求配置
+     */
+    private void applyRoute(HttpUriRequest request, ProxyRoute current, String endpoint) {
+        if (!(request instanceof HttpRequestBase)) {
+            return;
         }
+        HttpRequestBase base = (HttpRequestBase) request;
+        RequestConfig config = base.getConfig();
+        if (config == null || config.getProxy() != current.host) {
+            base.setConfig(requestConfig(current, endpoint));
+        }
+    }
 
-        return retryableCall(httpRequest.body(requestBody));
+    /**
+     * 区分失败原因：被限流只降低速率；服务端错误记为接口失败；
+     * 连接或读取失败在使用代理时记为代理失败，直连时记为接口失败
+     *
+     * @return 是否归咎于代理，被限流或经代理的连接失败
+     */
+    private boolean onFailure(String endpoint, String proxy, Throwable cause) {
+        if (cause instanceof HttpResponseException) {
+            int status = ((HttpResponseException) cause).getStatusCode();
+            if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                circuitBreaker.onSuccess(proxy);
+                circuitBreaker.onFailure(endpoint);
+                return false;
+            }
+            circuitBreaker.onSuccess(proxy);
+            circuitBreaker.onSuccess(endpoint);
+            rateLimiter.onThrottled(endpoint, proxy);
+            proxyPool.onThrottled(proxy);
+            return true;
+        }
+        if (proxy != null) {
+            circuitBreaker.release(endpoint);
+            circuitBreaker.onFailure(proxy);
+            proxyPool.onFailure(proxy);
+            return true;
+        }
+        circuitBreaker.onFailure(endpoint);
+        return false;
     }
 
-    private JSONObject retryableCall(HttpRequest httpRequest) {
-        Callable<String> task = () -> httpRequest.execute().body();
-        String responseBody = null;
+    /**
+     * 同步方法等待异步结果，异常按原类型抛出
+     */
+    private static <T> T await(CompletableFuture<T> future) {
         try {
-            responseBody = retryer.call(task);
-        } catch (ExecutionException e) {
-            log.error("重试调用接口[{}]失败, {}", httpRequest.getUrl(), e.getMessage());
-        } catch (RetryException e) {
-            log.error("调用接口[{}]超过执行次数, {}", httpRequest.getUrl(), e.getMessage());
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 代理地址与该代理下各接口的请求配置
+     */
+    private static class ProxyRoute {
+        static final ProxyRoute DIRECT = new ProxyRoute(null, null);
+
+        final String proxy;
+        final HttpHost host;
+        final Map<String, RequestConfig> requestConfigs = new ConcurrentHashMap<>();
+
+        ProxyRoute(String proxy, HttpHost host) {
+            this.proxy = proxy;
+            this.host = host;
         }
-        return JSONUtil.parseObj(responseBody);
     }
 }
@@ -0,0 +1,275 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.HttpClientConfig;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.SchemePortResolver;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有账号共享的B站API连接池
+ * <p>
+ * 基于非阻塞IO实现，等待响应期间不占用工作线程。连接按路由（目标主机与代理的组合）复用，
+ * 避免每次请求重新建立TLS连接。账号Cookie由调用方通过请求头传递，连接池本身不保存任何账号状态。
+ * <p>
+ * 异步方法返回的 {@link CompletableFuture} 在IO线程中完成，后续步骤不应在回调中阻塞；
+ * 取消返回的 {@link CompletableFuture} 会中止对应的请求并释放连接。
+ *
+ * @author cruii
+ * Created on 2022/01/18
+ */
+@Component
+@Log4j2
+public class BilibiliHttpClient {
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+
+    public BilibiliHttpClient(HttpClientConfig httpClientConfig,
+                              ThreadPoolTaskScheduler pacingScheduler) throws IOReactorException {
+        DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                .setIoThreadCount(httpClientConfig.getIoThreads())
+                .build());
+        connectionManager = new PoolingNHttpClientConnectionManager(ioReactor,
+                ManagedNHttpClientConnectionFactory.INSTANCE,
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", SSLIOSessionStrategy.getDefaultStrategy())
+                        .build(),
+                (SchemePortResolver) DefaultSchemePortResolver.INSTANCE,
+                SystemDefaultDnsResolver.INSTANCE,
+                httpClientConfig.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(httpClientConfig.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(httpClientConfig.getMaxPerRoute());
+
+        httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                // 不同账号共用连接，Cookie只能来自请求头
+                .disableCookieManagement()
+                .build();
+        httpClient.start();
+
+        long idleTimeout = httpClientConfig.getIdleTimeout().toMillis();
+        pacingScheduler.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, idleTimeout);
+    }
+
+    /**
+     * 异步执行请求并读取响应内容
+     *
+     * @param request 请求
+     * @return 响应内容，连接或读取失败时以 {@link IOException} 异常完成，
+     * 被限流或服务端错误时以 {@link HttpResponseException} 异常完成
+     */
+    public CompletableFuture<String> executeAsync(HttpUriRequest request) {
+        return executeAsync(request, entity -> EntityUtils.toString(entity, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 异步执行请求并读取响应的原始字节
+     *
+     * @param request 请求
+     * @return 响应内容，连接或读取失败时以 {@link IOException} 异常完成
+     */
+    public CompletableFuture<byte[]> executeForBytesAsync(HttpUriRequest request) {
+        return executeAsync(request, EntityUtils::toByteArray);
+    }
+
+    /**
+     * 异步执行请求，由调用方读取完整的响应，用于需要状态码或响应头的请求，例如条件请求
+     *
+     * @param request 请求
+     * @param reader  读取响应，被限流与服务端错误的响应不会交给reader
+     * @return 读取结果，连接或读取失败时以 {@link IOException} 异常完成，
+     * 被限流或服务端错误时以 {@link HttpResponseException} 异常完成
+     */
+    public <T> CompletableFuture<T> executeForResponseAsync(HttpUriRequest request, ResponseReader<T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<HttpResponse> execution = httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int status = response.getStatusLine().getStatusCode();
+                if (status == HttpStatus.SC_PRECONDITION_FAILED || status == SC_TOO_MANY_REQUESTS) {
+                    // 被限流时响应内容不是JSON，交由调用方按限流处理
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    future.completeExceptionally(new HttpResponseException(status, "请求被限流"));
+                    return;
+                }
+                if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    future.completeExceptionally(new HttpResponseException(status, "服务端错误"));
+                    return;
+                }
+                try {
+                    future.complete(reader.read(response));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 异步执行请求，只返回状态码，不读取响应内容，也不区分限流与服务端错误
+     *
+     * @param request 请求，一般为HEAD请求
+     * @return 响应状态码，连接或读取失败时以 {@link IOException} 异常完成
+     */
+    public CompletableFuture<Integer> executeForStatusAsync(HttpUriRequest request) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        Future<HttpResponse> execution = httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                future.complete(response.getStatusLine().getStatusCode());
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 执行请求并读取响应内容，阻塞至响应返回
+     *
+     * @param request 请求
+     * @return 响应内容
+     * @throws IOException 连接或读取失败
+     */
+    public String execute(HttpUriRequest request) throws IOException {
+        return await(executeAsync(request));
+    }
+
+    /**
+     * 执行请求并读取响应的原始字节，阻塞至响应返回
+     *
+     * @param request 请求
+     * @return 响应内容
+     * @throws IOException 连接或读取失败
+     */
+    public byte[] executeForBytes(HttpUriRequest request) throws IOException {
+        return await(executeForBytesAsync(request));
+    }
+
+    /**
+     * 连接池状态
+     */
+    public Map<String, Object> stats() {
+        PoolStats totalStats = connectionManager.getTotalStats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leased", totalStats.getLeased());
+        stats.put("available", totalStats.getAvailable());
+        stats.put("pending", totalStats.getPending());
+        stats.put("max", totalStats.getMax());
+        stats.put("routes", connectionManager.getRoutes().size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("关闭连接池失败", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> executeAsync(HttpUriRequest request, EntityReader<T> reader) {
+        return executeForResponseAsync(request, response -> {
+            HttpEntity entity = response.getEntity();
+            return entity == null ? null : reader.read(entity);
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new InterruptedIOException("请求被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(HttpResponse response) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntityReader<T> {
+        T read(HttpEntity entity) throws IOException;
+    }
+}
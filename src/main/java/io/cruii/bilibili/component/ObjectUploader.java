@@ -0,0 +1,221 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.core.text.CharSequenceUtil;
+import io.cruii.bilibili.config.StorageConfig;
+import io.cruii.bilibili.config.TencentCloudConfig;
+import io.cruii.bilibili.storage.CosObjectStorage;
+import io.cruii.bilibili.storage.LocalObjectStorage;
+import io.cruii.bilibili.storage.ObjectStorage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步上传对象
+ * <p>
+ * 提交方只把对象名放入有界队列，由固定数量的上传线程复用同一个 {@link ObjectStorage} 上传。
+ * 同一对象名在等待上传期间再次提交时只更新待上传的内容，不重复入队；
+ * 内容摘要与该对象名上次上传成功的相同时不再上传。
+ * 队列已满时提交方最多等待 {@link StorageConfig#getOfferTimeout()}，超时后本次上传失败。
+ *
+ * @author cruii
+ * Created on 2022/01/26
+ */
+@Component
+@Log4j2
+public class ObjectUploader {
+    private final StorageConfig storageConfig;
+    private final ObjectStorage storage;
+    private final BlockingQueue<String> queue;
+    private final ExecutorService uploadExecutor;
+
+    /**
+     * 已入队、尚未开始上传的对象
+     */
+    private final Map<String, Upload> pending = new ConcurrentHashMap<>();
+    /**
+     * 对象名与上次上传成功的内容摘要
+     */
+    private final Map<String, String> uploadedHashes = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    public ObjectUploader(StorageConfig storageConfig,
+                          TencentCloudConfig tencentCloudConfig) {
+        this(storageConfig, createStorage(storageConfig, tencentCloudConfig));
+    }
+
+    /**
+     * @param storage 对象存储，为null时不上传
+     */
+    ObjectUploader(StorageConfig storageConfig, ObjectStorage storage) {
+        this.storageConfig = storageConfig;
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<>(storageConfig.getQueueCapacity());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(storageConfig.getWorkers(), r -> {
+            Thread thread = new Thread(r, "object-upload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (storage != null) {
+            for (int i = 0; i < storageConfig.getWorkers(); i++) {
+                uploadExecutor.execute(this::work);
+            }
+        }
+    }
+
+    private static ObjectStorage createStorage(StorageConfig storageConfig, TencentCloudConfig tencentCloudConfig) {
+        if ("local".equalsIgnoreCase(storageConfig.getType())) {
+            log.info("对象将保存到本地目录: {}", storageConfig.getLocalDir());
+            return new LocalObjectStorage(storageConfig.getLocalDir());
+        }
+        if (CharSequenceUtil.hasBlank(tencentCloudConfig.getSecretId(), tencentCloudConfig.getSecretKey(),
+                tencentCloudConfig.getCosRegion(), tencentCloudConfig.getBucketName())) {
+            log.warn("未配置腾讯云COS，不上传对象");
+            return null;
+        }
+        return new CosObjectStorage(tencentCloudConfig, storageConfig.getMaxConnections());
+    }
+
+    /**
+     * 提交上传，队列已满时最多等待 {@link StorageConfig#getOfferTimeout()}
+     *
+     * @param key  对象名
+     * @param file 对象内容，上传完成前不能修改
+     * @param hash 内容摘要，用于跳过未变化的内容
+     * @return 上传完成或跳过时为true，未配置存储时为false，失败时异常完成
+     */
+    public CompletableFuture<Boolean> upload(String key, File file, String hash) {
+        if (storage == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        submitted.incrementAndGet();
+        if (hash.equals(uploadedHashes.get(key))) {
+            skipped.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        }
+
+        Upload[] created = new Upload[1];
+        Upload upload = pending.compute(key, (k, queued) -> {
+            if (queued == null) {
+                created[0] = new Upload(file, hash);
+                return created[0];
+            }
+            queued.file = file;
+            queued.hash = hash;
+            return queued;
+        });
+        if (created[0] == null) {
+            coalesced.incrementAndGet();
+            return upload.future;
+        }
+
+        boolean offered;
+        try {
+            offered = queue.offer(key, storageConfig.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            pending.remove(key, upload);
+            rejected.incrementAndGet();
+            upload.future.completeExceptionally(new RejectedExecutionException("上传队列已满: " + key));
+        }
+        return upload.future;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("storage", storage == null ? "none" : storage.getClass().getSimpleName());
+        stats.put("queued", queue.size());
+        stats.put("submitted", submitted.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("skipped", skipped.get());
+        stats.put("uploaded", uploaded.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+        if (storage != null) {
+            storage.shutdown();
+        }
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            String key;
+            try {
+                key = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // 取出后再提交的同名对象会重新入队
+            Upload upload = pending.remove(key);
+            if (upload != null) {
+                put(key, upload);
+            }
+        }
+    }
+
+    private void put(String key, Upload upload) {
+        String hash = upload.hash;
+        if (hash.equals(uploadedHashes.get(key))) {
+            skipped.incrementAndGet();
+            upload.future.complete(true);
+            return;
+        }
+        try {
+            storage.put(key, upload.file);
+            uploadedHashes.put(key, hash);
+            uploaded.incrementAndGet();
+            upload.future.complete(true);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("对象[{}]上传失败: {}", key, e.getMessage());
+            upload.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 等待上传的对象，同名对象合并后共用一个结果
+     */
+    private static class Upload {
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private volatile File file;
+        private volatile String hash;
+
+        Upload(File file, String hash) {
+            this.file = file;
+            this.hash = hash;
+        }
+    }
+}
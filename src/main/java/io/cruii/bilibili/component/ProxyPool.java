@@ -0,0 +1,558 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.core.io.resource.NoResourceException;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.cruii.bilibili.config.ProxyPoolConfig;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 代理池，所有账号共享
+ * <p>
+ * 由后台线程定时从代理服务商获取代理，检查可用后放入代理池，可用代理少于
+ * {@link ProxyPoolConfig#getMinReady()} 时提前补充。分配代理只读取代理池，不加锁也不等待；
+ * 代理池为空时返回null，由调用方直连，同时立即触发一次补充。
+ * 同一时刻最多有一次补充在等待或执行，两次获取代理的间隔不小于 {@link ProxyPoolConfig#getMinFetchInterval()}。
+ * <p>
+ * 同一批代理通过 {@link BilibiliHttpClient} 并发检查，同时检查的数量不超过
+ * {@link ProxyPoolConfig#getCheckConcurrency()}，每个代理的检查时长有上限。
+ * <p>
+ * 代理在有效期内可以分配给多个账号，每个代理记录最近的耗时、成功率与被限流的比例，
+ * 分配时按这些统计加权随机选择；成功率过低的代理直接移除，不再分配。
+ * <p>
+ * 未配置代理服务商时不启动后台线程，所有账号直连。
+ *
+ * @author cruii
+ * Created on 2022/01/24
+ */
+@Component
+@Log4j2
+public class ProxyPool {
+    /**
+     * 成功率、限流比例与耗时的指数加权系数
+     */
+    private static final double ALPHA = 0.2D;
+    /**
+     * 计算权重时耗时的下限，避免极低耗时的代理独占所有账号
+     */
+    private static final double MIN_LATENCY = 50D;
+
+    private final ProxyPoolConfig proxyPoolConfig;
+    private final BilibiliHttpClient httpClient;
+    /**
+     * 获取代理与等待一批检查结束都会阻塞，使用单独的线程，不占用任务调度器
+     */
+    private final ScheduledExecutorService proxyScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "proxy-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, ProxyStats> proxies = new ConcurrentHashMap<>();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+    /**
+     * 下一次可以获取代理的时间，{@link System#nanoTime()}
+     */
+    private volatile long nextFetchAt = System.nanoTime();
+
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicInteger checking = new AtomicInteger();
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private volatile Map<String, Object> lastBatch = new LinkedHashMap<>();
+
+    private String api;
+
+    public ProxyPool(ProxyPoolConfig proxyPoolConfig,
+                     BilibiliHttpClient httpClient) {
+        this.proxyPoolConfig = proxyPoolConfig;
+        this.httpClient = httpClient;
+    }
+
+    @PostConstruct
+    public void start() {
+        api = CharSequenceUtil.isNotBlank(proxyPoolConfig.getApi()) ? proxyPoolConfig.getApi() : loadLegacyApi();
+        if (!isEnabled()) {
+            log.info("未配置代理服务商，所有账号直连");
+            return;
+        }
+        long interval = proxyPoolConfig.getRefreshInterval().toMillis();
+        proxyScheduler.scheduleWithFixedDelay(this::refill, 0L, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        proxyScheduler.shutdownNow();
+    }
+
+    /**
+     * 是否配置了代理服务商
+     */
+    public boolean isEnabled() {
+        return CharSequenceUtil.isNotBlank(api);
+    }
+
+    /**
+     * 为账号分配一个代理
+     *
+     * @return 代理地址，格式为host:port，没有可用代理或未启用代理时为null
+     */
+    public String acquire() {
+        return acquire(null);
+    }
+
+    /**
+     * 为账号分配一个代理，按代理的统计加权随机选择
+     *
+     * @param exclude 排除的代理，一般为账号刚刚放弃的代理
+     * @return 代理地址，格式为host:port，没有可用代理或未启用代理时为null
+     */
+    public String acquire(String exclude) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String proxy = select(exclude);
+        if (proxy != null) {
+            acquired.incrementAndGet();
+            if (proxies.size() < proxyPoolConfig.getMinReady()) {
+                requestRefill();
+            }
+            return proxy;
+        }
+        misses.incrementAndGet();
+        log.warn("代理池为空，本次直连");
+        requestRefill();
+        return null;
+    }
+
+    /**
+     * 不计入分配次数地选择一个代理，用于临时借用
+     *
+     * @param exclude 排除的代理
+     * @return 代理地址，没有可用的代理时为null
+     */
+    public String peek(String exclude) {
+        return select(exclude);
+    }
+
+    /**
+     * 代理是否仍在代理池中且未过期，已被移除的代理应尽快切换
+     *
+     * @param proxy 代理地址
+     */
+    public boolean isAvailable(String proxy) {
+        ProxyStats stats = proxies.get(proxy);
+        return stats != null && !stats.isExpired();
+    }
+
+    /**
+     * 代理已转发响应
+     *
+     * @param proxy  代理地址，为null时忽略
+     * @param millis 请求耗时
+     */
+    public void onResponse(String proxy, long millis) {
+        ProxyStats stats = proxy == null ? null : proxies.get(proxy);
+        if (stats != null) {
+            stats.onResponse(millis);
+        }
+    }
+
+    /**
+     * 经代理的连接或读取失败，成功率过低时移除该代理
+     *
+     * @param proxy 代理地址，为null时忽略
+     */
+    public void onFailure(String proxy) {
+        ProxyStats stats = proxy == null ? null : proxies.get(proxy);
+        if (stats == null) {
+            return;
+        }
+        stats.onFailure();
+        if (stats.getSamples() >= proxyPoolConfig.getMinSamples()
+                && stats.getSuccessRate() < proxyPoolConfig.getMinSuccessRate()
+                && proxies.remove(proxy, stats)) {
+            evicted.incrementAndGet();
+            log.warn("代理[{}]成功率过低，已移除", proxy);
+        }
+    }
+
+    /**
+     * 经代理的请求被B站限流
+     *
+     * @param proxy 代理地址，为null时忽略
+     */
+    public void onThrottled(String proxy) {
+        ProxyStats stats = proxy == null ? null : proxies.get(proxy);
+        if (stats != null) {
+            stats.onThrottled();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("ready", proxies.size());
+        stats.put("fetched", fetched.get());
+        stats.put("malformed", malformed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("expired", expired.get());
+        stats.put("evicted", evicted.get());
+        stats.put("acquired", acquired.get());
+        stats.put("misses", misses.get());
+        Map<String, Object> checks = new LinkedHashMap<>();
+        checks.put("checking", checking.get());
+        checks.put("checked", checked.get());
+        checks.put("passed", passed.get());
+        checks.put("timedOut", timedOut.get());
+        checks.put("lastBatch", lastBatch);
+        stats.put("checks", checks);
+        Map<String, Object> details = new LinkedHashMap<>();
+        proxies.forEach((proxy, proxyStats) -> details.put(proxy, proxyStats.snapshot()));
+        stats.put("proxies", details);
+        return stats;
+    }
+
+    /**
+     * 按权重随机选择，权重只读取各代理的volatile字段，不加锁
+     */
+    private String select(String exclude) {
+        double total = 0D;
+        for (ProxyStats stats : proxies.values()) {
+            if (isCandidate(stats, exclude)) {
+                total += stats.weight;
+            }
+        }
+        if (total <= 0D) {
+            return null;
+        }
+        double r = ThreadLocalRandom.current().nextDouble(total);
+        String last = null;
+        for (ProxyStats stats : proxies.values()) {
+            if (isCandidate(stats, exclude)) {
+                last = stats.proxy;
+                r -= stats.weight;
+                if (r < 0D) {
+                    return stats.proxy;
+                }
+            }
+        }
+        // 两次遍历之间代理池发生变化
+        return last;
+    }
+
+    private static boolean isCandidate(ProxyStats stats, String exclude) {
+        return !stats.proxy.equals(exclude) && !stats.isExpired();
+    }
+
+    /**
+     * 请求一次补充，已有补充在等待或执行时忽略
+     */
+    private void requestRefill() {
+        if (refilling.get() || !refillRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            proxyScheduler.execute(() -> {
+                refillRequested.set(false);
+                refill();
+            });
+        } catch (RejectedExecutionException e) {
+            // 已停止
+            refillRequested.set(false);
+        }
+    }
+
+    /**
+     * 清理过期代理，数量不足时从代理服务商补充，同一时刻只有一次补充在执行
+     */
+    private void refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            evictExpired();
+            if (proxies.size() >= proxyPoolConfig.getMinReady()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - nextFetchAt < 0) {
+                return;
+            }
+            nextFetchAt = now + proxyPoolConfig.getMinFetchInterval().toNanos();
+            List<String> candidates = fetch().stream()
+                    .distinct()
+                    .filter(proxy -> !proxies.containsKey(proxy))
+                    .collect(Collectors.toList());
+            validate(candidates);
+            log.debug("当前可用代理数: {}", proxies.size());
+        } catch (RuntimeException e) {
+            log.error("补充代理失败", e);
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    private void evictExpired() {
+        proxies.forEach((proxy, stats) -> {
+            if (stats.isExpired() && proxies.remove(proxy, stats)) {
+                expired.incrementAndGet();
+            }
+        });
+    }
+
+    private List<String> fetch() {
+        log.debug("获取代理地址");
+        String body = HttpRequest.get(api)
+                .timeout((int) proxyPoolConfig.getCheckTimeout().toMillis())
+                .execute().body();
+        JSONArray data = JSONUtil.parseObj(body).getJSONArray("data");
+        if (data == null) {
+            log.warn("获取代理地址失败: {}", body);
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(data.size());
+        for (Object item : data) {
+            JSONObject obj = JSONUtil.parseObj(item);
+            String ip = obj.getStr("ip");
+            Integer port = obj.getInt("port");
+            if (CharSequenceUtil.isBlank(ip) || port == null || port <= 0 || port > 65535) {
+                malformed.incrementAndGet();
+                log.debug("忽略格式错误的代理: {}", obj);
+                continue;
+            }
+            result.add(ip + ":" + port);
+        }
+        fetched.addAndGet(result.size());
+        return result;
+    }
+
+    /**
+     * 并发检查一批代理，检查通过的立即放入代理池，全部检查结束后返回
+     *
+     * @param candidates 待检查的代理
+     */
+    void validate(List<String> candidates) {
+        long start = System.nanoTime();
+        AtomicInteger batchPassed = new AtomicInteger();
+        Semaphore permits = new Semaphore(proxyPoolConfig.getCheckConcurrency());
+        List<CompletableFuture<Void>> checks = new ArrayList<>(candidates.size());
+        for (String proxy : candidates) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            checking.incrementAndGet();
+            checks.add(check(proxy).thenAccept(latency -> {
+                checking.decrementAndGet();
+                permits.release();
+                checked.incrementAndGet();
+                if (latency < 0) {
+                    rejected.incrementAndGet();
+                    return;
+                }
+                passed.incrementAndGet();
+                batchPassed.incrementAndGet();
+                proxies.put(proxy, new ProxyStats(proxy,
+                        System.nanoTime() + proxyPoolConfig.getMaxAge().toNanos(),
+                        proxyPoolConfig.getWindow(), latency));
+            }));
+        }
+        CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).join();
+
+        Map<String, Object> batch = new LinkedHashMap<>();
+        batch.put("candidates", candidates.size());
+        batch.put("passed", batchPassed.get());
+        batch.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastBatch = batch;
+    }
+
+    /**
+     * 经代理向检查地址发送HEAD请求，连接、读取与等待连接各自受 {@link ProxyPoolConfig#getCheckTimeout()} 限制
+     *
+     * @return 检查请求的耗时，代理不可用时为-1，不会异常完成
+     */
+    private CompletableFuture<Long> check(String proxy) {
+        HttpHost host;
+        try {
+            String[] address = proxy.split(":");
+            host = new HttpHost(address[0], Integer.parseInt(address[1]));
+        } catch (RuntimeException e) {
+            log.debug("代理[{}]格式错误", proxy);
+            return CompletableFuture.completedFuture(-1L);
+        }
+        int timeout = (int) proxyPoolConfig.getCheckTimeout().toMillis();
+        HttpHead head = new HttpHead(proxyPoolConfig.getCheckUrl());
+        head.setConfig(RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setProxy(host)
+                .build());
+        long start = System.nanoTime();
+        return httpClient.executeForStatusAsync(head).handle((status, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException) {
+                    timedOut.incrementAndGet();
+                }
+                log.debug("代理[{}]不可用: {}", proxy, cause.getMessage());
+                return -1L;
+            }
+            if (status < 200 || status >= 400) {
+                log.debug("代理[{}]不可用: 响应状态码{}", proxy, status);
+                return -1L;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * 兼容旧版本的proxy.properties
+     */
+    private static String loadLegacyApi() {
+        try (InputStream stream = ResourceUtil.getStream("proxy.properties")) {
+            Properties properties = new Properties();
+            properties.load(stream);
+            return properties.getProperty("proxy.api");
+        } catch (NoResourceException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个代理的统计
+     * <p>
+     * 记录时加锁更新，同时计算分配权重：成功率的平方 × (1 - 被限流比例) ÷ 平均耗时。
+     * 新加入的代理以检查请求的耗时作为初始耗时，成功率视为100%
+     */
+    private static class ProxyStats {
+        private final String proxy;
+        private final long expiresAt;
+        private final long[] latencies;
+        private int size;
+        private int next;
+        private long successes;
+        private long failures;
+        private long throttles;
+        private double successRate = 1D;
+        private double throttleRate;
+        private double latency;
+        private volatile double weight;
+
+        private ProxyStats(String proxy, long expiresAt, int window, long checkLatency) {
+            this.proxy = proxy;
+            this.expiresAt = expiresAt;
+            this.latencies = new long[window];
+            this.latency = checkLatency;
+            updateWeight();
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+
+        private synchronized void onResponse(long millis) {
+            latencies[next] = millis;
+            next = (next + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+            successes++;
+            successRate += ALPHA * (1D - successRate);
+            throttleRate -= ALPHA * throttleRate;
+            latency += ALPHA * (millis - latency);
+            updateWeight();
+        }
+
+        private synchronized void onFailure() {
+            failures++;
+            successRate -= ALPHA * successRate;
+            updateWeight();
+        }
+
+        private synchronized void onThrottled() {
+            throttles++;
+            throttleRate += ALPHA * (1D - throttleRate);
+            updateWeight();
+        }
+
+        private synchronized long getSamples() {
+            return successes + failures;
+        }
+
+        private synchronized double getSuccessRate() {
+            return successRate;
+        }
+
+        private void updateWeight() {
+            weight = successRate * successRate * (1D - throttleRate) / Math.max(latency, MIN_LATENCY);
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            snapshot.put("p50", percentile(sorted, 0.5D));
+            snapshot.put("p95", percentile(sorted, 0.95D));
+            snapshot.put("successes", successes);
+            snapshot.put("failures", failures);
+            snapshot.put("throttles", throttles);
+            snapshot.put("successRate", successRate);
+            snapshot.put("throttleRate", throttleRate);
+            snapshot.put("weight", weight);
+            return snapshot;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return -1;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+}
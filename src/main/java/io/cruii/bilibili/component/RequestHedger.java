@@ -0,0 +1,217 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.HedgeConfig;
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录各接口的请求耗时，并为耗时过长的GET请求发送对冲请求
+ * <p>
+ * GET请求超过该接口近期耗时的指定分位（默认p95）仍未完成时，通过另一个代理再发送一次相同的请求，
+ * 以先返回的响应为准，另一个请求随即取消。原请求失败时直接返回失败，由重试策略处理。
+ * 只有 {@link RetryPolicy#isHedgeable(String)} 判定为幂等且只读的接口才会对冲，
+ * 对冲请求同样经过 {@link ApiRateLimiter} 预约，需要等待时延迟发送。
+ * 对冲请求的总量不超过GET请求数的 {@link HedgeConfig#getMaxRatio()}。
+ *
+ * @author cruii
+ * Created on 2022/01/23
+ */
+@Component
+public class RequestHedger {
+    private static final String UNKNOWN_ENDPOINT = "";
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final BilibiliHttpClient httpClient;
+    private final ApiCircuitBreaker circuitBreaker;
+    private final ProxyPool proxyPool;
+    private final ApiRateLimiter rateLimiter;
+    private final RetryPolicy retryPolicy;
+    private final ThreadPoolTaskScheduler pacingScheduler;
+    private final HedgeConfig hedgeConfig;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong won = new AtomicLong();
+
+    public RequestHedger(BilibiliHttpClient httpClient,
+                         ApiCircuitBreaker circuitBreaker,
+                         ProxyPool proxyPool,
+                         ApiRateLimiter rateLimiter,
+                         RetryPolicy retryPolicy,
+                         ThreadPoolTaskScheduler pacingScheduler,
+                         HedgeConfig hedgeConfig) {
+        this.httpClient = httpClient;
+        this.circuitBreaker = circuitBreaker;
+        this.proxyPool = proxyPool;
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy;
+        this.pacingScheduler = pacingScheduler;
+        this.hedgeConfig = hedgeConfig;
+    }
+
+    /**
+     * 发送请求，满足条件时对冲
+     *
+     * @param request  请求
+     * @param endpoint 接口名
+     * @param proxy    原请求使用的代理，直连时为null
+     * @return 响应内容
+     */
+    public CompletableFuture<String> executeAsync(HttpUriRequest request, String endpoint, String proxy) {
+        LatencyWindow window = latencies.computeIfAbsent(endpoint == null ? UNKNOWN_ENDPOINT : endpoint,
+                k -> new LatencyWindow(hedgeConfig.getWindow()));
+        long start = System.nanoTime();
+        CompletableFuture<String> primary = httpClient.executeAsync(request);
+        primary.thenRun(() -> window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+        if (!hedgeConfig.isEnabled() || !(request instanceof HttpGet) || !retryPolicy.isHedgeable(endpoint)) {
+            return primary;
+        }
+        requests.incrementAndGet();
+        long threshold = window.threshold(hedgeConfig.getPercentile(), hedgeConfig.getMinSamples());
+        if (threshold < 0) {
+            return primary;
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        primary.whenComplete((body, e) -> {
+            if (e == null) {
+                result.complete(body);
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+        long delay = Math.max(threshold, hedgeConfig.getMinDelay().toMillis());
+        ScheduledFuture<?> timer = pacingScheduler.schedule(() -> hedge((HttpGet) request, endpoint, proxy, result),
+                new Date(System.currentTimeMillis() + delay));
+        result.whenComplete((body, e) -> {
+            timer.cancel(false);
+            primary.cancel(false);
+        });
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", hedgeConfig.isEnabled());
+        stats.put("requests", requests.get());
+        stats.put("hedged", hedged.get());
+        stats.put("won", won.get());
+        Map<String, Object> thresholds = new LinkedHashMap<>();
+        latencies.forEach((endpoint, window) ->
+                thresholds.put(endpoint, window.threshold(hedgeConfig.getPercentile(), hedgeConfig.getMinSamples())));
+        stats.put("thresholds", thresholds);
+        return stats;
+    }
+
+    private void hedge(HttpGet request, String endpoint, String proxy, CompletableFuture<String> result) {
+        if (result.isDone() || hedged.get() >= requests.get() * hedgeConfig.getMaxRatio()) {
+            return;
+        }
+        String other = proxyPool.peek(proxy);
+        if (other == null || !circuitBreaker.tryAcquire(other)) {
+            return;
+        }
+        hedged.incrementAndGet();
+
+        long waitNanos = rateLimiter.reserve(endpoint, other);
+        if (waitNanos <= 0) {
+            send(request, other, result);
+            return;
+        }
+        ScheduledFuture<?> timer = pacingScheduler.schedule(() -> send(request, other, result),
+                new Date(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        result.whenComplete((body, e) -> {
+            if (timer.cancel(false)) {
+                circuitBreaker.release(other);
+            }
+        });
+    }
+
+    private void send(HttpGet request, String other, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            circuitBreaker.release(other);
+            return;
+        }
+        String[] address = other.split(":");
+        HttpGet hedge = new HttpGet(request.getURI());
+        hedge.setHeaders(request.getAllHeaders());
+        RequestConfig config = request.getConfig() == null ? RequestConfig.DEFAULT : request.getConfig();
+        hedge.setConfig(RequestConfig.copy(config)
+                .setProxy(new HttpHost(address[0], Integer.parseInt(address[1])))
+                .build());
+
+        CompletableFuture<String> response = httpClient.executeAsync(hedge);
+        response.whenComplete((body, e) -> {
+            if (e == null) {
+                circuitBreaker.onSuccess(other);
+                if (result.complete(body)) {
+                    won.incrementAndGet();
+                }
+            } else if (e instanceof HttpResponseException) {
+                // 代理已正常转发响应
+                circuitBreaker.onSuccess(other);
+            } else if (e instanceof CancellationException) {
+                circuitBreaker.release(other);
+            } else {
+                circuitBreaker.onFailure(other);
+            }
+        });
+        result.whenComplete((body, e) -> response.cancel(false));
+    }
+
+    /**
+     * 接口最近的请求耗时
+     */
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int size;
+        private int next;
+        private int sinceComputed;
+        private long threshold = -1;
+
+        private LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        private synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            sinceComputed++;
+        }
+
+        /**
+         * @return 指定分位的耗时，样本不足时为-1
+         */
+        private synchronized long threshold(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return -1;
+            }
+            if (threshold < 0 || sinceComputed >= RECOMPUTE_INTERVAL) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                threshold = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+                sinceComputed = 0;
+            }
+            return threshold;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.core.text.CharSequenceUtil;
+import io.cruii.bilibili.entity.TaskConfig;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 账号请求的公共部分
+ * <p>
+ * Cookie、UA等请求头在创建时拼接完成，之后每次请求直接复用同一组不可变的 {@link Header}，
+ * 账号的Cookie更新后需要重新创建 {@link BilibiliDelegate}
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+public class RequestTemplate {
+    private static final ContentType FORM_URLENCODED = ContentType.create("application/x-www-form-urlencoded", StandardCharsets.UTF_8);
+    private static final Header KEEP_ALIVE = new BasicHeader(HttpHeaders.CONNECTION, "keep-alive");
+    private static final Header REFERER = new BasicHeader(HttpHeaders.REFERER, "https://www.bilibili.com/");
+
+    private final Header[] getHeaders;
+    private final Header[] postHeaders;
+
+    public RequestTemplate(TaskConfig config) {
+        Header userAgent = new BasicHeader(HttpHeaders.USER_AGENT, config.getUserAgent());
+        Header cookie = new BasicHeader("Cookie", "bili_jct=" + config.getBiliJct() +
+                ";SESSDATA=" + config.getSessdata() +
+                ";DedeUserID=" + config.getDedeuserid() + ";");
+        this.getHeaders = new Header[]{KEEP_ALIVE, userAgent, cookie};
+        this.postHeaders = new Header[]{KEEP_ALIVE, userAgent, REFERER, cookie};
+    }
+
+    /**
+     * 创建GET请求
+     *
+     * @param url           完整的请求地址
+     * @param requestConfig 超时与代理设置
+     */
+    public HttpGet get(String url, RequestConfig requestConfig) {
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.setConfig(requestConfig);
+        httpGet.setHeaders(getHeaders);
+        return httpGet;
+    }
+
+    /**
+     * 创建POST请求，请求体以'{'或'['开头时按JSON发送，否则按表单发送
+     *
+     * @param url           请求地址
+     * @param requestBody   请求体
+     * @param headers       额外的请求头，可以为null
+     * @param requestConfig 超时与代理设置
+     */
+    public HttpPost post(String url, String requestBody, Map<String, String> headers, RequestConfig requestConfig) {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setConfig(requestConfig);
+        httpPost.setHeaders(postHeaders);
+        if (headers != null) {
+            headers.forEach(httpPost::setHeader);
+        }
+        ContentType contentType = isJson(requestBody) ? ContentType.APPLICATION_JSON : FORM_URLENCODED;
+        httpPost.setEntity(new StringEntity(CharSequenceUtil.nullToEmpty(requestBody), contentType));
+        return httpPost;
+    }
+
+    /**
+     * 请求体由调用方生成，只需区分JSON与表单，不必完整解析
+     */
+    static boolean isJson(String requestBody) {
+        if (requestBody == null) {
+            return false;
+        }
+        for (int i = 0; i < requestBody.length(); i++) {
+            char c = requestBody.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{' || c == '[';
+            }
+        }
+        return false;
+    }
+}
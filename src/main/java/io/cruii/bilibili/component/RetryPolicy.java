@@ -0,0 +1,136 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.RetryConfig;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据接口的重试规则判断失败的调用是否重试，以及重试前的等待时长
+ * <p>
+ * 等待时长按指数增长并随机浮动，所有重试须在调用的总时长上限内完成。
+ * 非幂等接口只在请求确定未被处理时重试：连接未建立、被网关限流，或响应码表明请求被拒绝。
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Component
+public class RetryPolicy {
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String UNKNOWN_ENDPOINT = "";
+
+    private final RetryConfig retryConfig;
+    private final Map<String, RetryConfig.Rule> rules = new ConcurrentHashMap<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong deadlineExceeded = new AtomicLong();
+
+    public RetryPolicy(RetryConfig retryConfig) {
+        this.retryConfig = retryConfig;
+    }
+
+    /**
+     * 请求得到响应后判断是否根据响应码重试
+     *
+     * @param endpoint      接口名
+     * @param attemptNumber 已尝试的次数
+     * @param startNanos    第一次请求的时间，{@link System#nanoTime()}
+     * @param code          响应码
+     * @return 重试前等待的毫秒数，不重试时为-1
+     */
+    public long onResponse(String endpoint, int attemptNumber, long startNanos, Integer code) {
+        RetryConfig.Rule rule = ruleOf(endpoint);
+        if (code == null || !rule.getRetriableCodes().contains(code)) {
+            return -1;
+        }
+        return backoff(rule, attemptNumber, startNanos);
+    }
+
+    /**
+     * 请求失败后判断是否重试
+     *
+     * @param endpoint      接口名
+     * @param attemptNumber 已尝试的次数
+     * @param startNanos    第一次请求的时间，{@link System#nanoTime()}
+     * @param cause         失败原因
+     * @return 重试前等待的毫秒数，不重试时为-1
+     */
+    public long onError(String endpoint, int attemptNumber, long startNanos, Throwable cause) {
+        RetryConfig.Rule rule = ruleOf(endpoint);
+        boolean retriable = Boolean.TRUE.equals(rule.getIdempotent()) ? cause instanceof IOException : isRejected(cause);
+        if (!retriable) {
+            return -1;
+        }
+        return backoff(rule, attemptNumber, startNanos);
+    }
+
+    /**
+     * 接口是否可以发送对冲请求，只有幂等且只读的接口可以
+     *
+     * @param endpoint 接口名，未知接口为null
+     * @return 可以对冲时为true
+     */
+    public boolean isHedgeable(String endpoint) {
+        if (endpoint == null) {
+            return false;
+        }
+        RetryConfig.Rule rule = ruleOf(endpoint);
+        return Boolean.TRUE.equals(rule.getIdempotent()) && Boolean.TRUE.equals(rule.getReadOnly());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retries", retries.get());
+        stats.put("exhausted", exhausted.get());
+        stats.put("deadlineExceeded", deadlineExceeded.get());
+        return stats;
+    }
+
+    private RetryConfig.Rule ruleOf(String endpoint) {
+        return rules.computeIfAbsent(endpoint == null ? UNKNOWN_ENDPOINT : endpoint,
+                k -> retryConfig.getRule(endpoint));
+    }
+
+    private long backoff(RetryConfig.Rule rule, int attemptNumber, long startNanos) {
+        if (attemptNumber >= rule.getMaxAttempts()) {
+            exhausted.incrementAndGet();
+            return -1;
+        }
+        double base = retryConfig.getInitialBackoff().toMillis() * Math.pow(retryConfig.getMultiplier(), attemptNumber - 1D);
+        base = Math.min(base, retryConfig.getMaxBackoff().toMillis());
+        double jitter = retryConfig.getJitter();
+        long delay = (long) (base * (1 - jitter + ThreadLocalRandom.current().nextDouble() * 2 * jitter));
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (elapsed + delay > retryConfig.getDeadline().toMillis()) {
+            deadlineExceeded.incrementAndGet();
+            return -1;
+        }
+        retries.incrementAndGet();
+        return Math.max(delay, 0L);
+    }
+
+    /**
+     * 请求确定未被服务端处理
+     */
+    private static boolean isRejected(Throwable cause) {
+        if (cause instanceof HttpResponseException) {
+            int status = ((HttpResponseException) cause).getStatusCode();
+            return status == HttpStatus.SC_PRECONDITION_FAILED || status == SC_TOO_MANY_REQUESTS;
+        }
+        return cause instanceof ConnectException
+                || cause instanceof ConnectTimeoutException
+                || cause instanceof UnknownHostException;
+    }
+}
@@ -0,0 +1,165 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.LiveRoomInfo;
+import io.cruii.bilibili.model.SpaceInfo;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 所有账号共享的充电、送礼对象信息缓存
+ * <p>
+ * 大部分账号的充电、送礼对象相同，用户信息与直播间号也很少变化，每个对象在缓存时长内只查询一次。
+ * 用户不存在或没有直播间的结果同样缓存，缓存时长较短；其他失败不缓存。
+ *
+ * @author cruii
+ * Created on 2022/01/21
+ */
+@Component
+public class TargetInfoCache {
+    private static final int CODE_USER_NOT_FOUND = -404;
+
+    private final Lookup<SpaceInfo> spaceInfos;
+    private final Lookup<String> roomIds;
+
+    public TargetInfoCache(CacheConfig cacheConfig) {
+        this.spaceInfos = new Lookup<>(cacheConfig::getTargetTtl, cacheConfig::getNegativeTtl);
+        this.roomIds = new Lookup<>(cacheConfig::getRoomIdTtl, cacheConfig::getNegativeTtl);
+    }
+
+    /**
+     * 获取用户空间信息
+     *
+     * @param userId B站uid
+     * @param loader 缓存未命中时请求用户空间信息的方法
+     * @return 用户空间信息，所有账号共享同一对象，调用方不能修改；用户不存在时为空
+     */
+    public CompletableFuture<Optional<SpaceInfo>> getSpaceInfo(String userId,
+                                                               Function<String, CompletableFuture<BilibiliResponse<SpaceInfo>>> loader) {
+        return spaceInfos.get(userId, () -> loader.apply(userId).thenApply(TargetInfoCache::parseSpaceInfo));
+    }
+
+    /**
+     * 获取用户的直播间号
+     *
+     * @param userId B站uid
+     * @param loader 缓存未命中时请求直播间信息的方法
+     * @return 直播间号，用户没有直播间时为空
+     */
+    public CompletableFuture<Optional<String>> getRoomId(String userId,
+                                                         Function<String, CompletableFuture<BilibiliResponse<LiveRoomInfo>>> loader) {
+        return roomIds.get(userId, () -> loader.apply(userId).thenApply(TargetInfoCache::parseRoomId));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("spaceInfo", spaceInfos.stats());
+        stats.put("roomId", roomIds.stats());
+        return stats;
+    }
+
+    private static Optional<SpaceInfo> parseSpaceInfo(BilibiliResponse<SpaceInfo> resp) {
+        if (Integer.valueOf(CODE_USER_NOT_FOUND).equals(resp.getCode())) {
+            return Optional.empty();
+        }
+        if (!resp.isSuccess() || resp.getData() == null) {
+            throw new IllegalStateException("获取用户空间信息失败：" + resp.getMessage());
+        }
+        return Optional.of(resp.getData());
+    }
+
+    private static Optional<String> parseRoomId(BilibiliResponse<LiveRoomInfo> resp) {
+        if (!resp.isSuccess()) {
+            throw new IllegalStateException("获取直播间信息失败：" + resp.getMessage());
+        }
+        Long roomId = resp.getData() == null ? null : resp.getData().getRoomId();
+        if (roomId == null || roomId == 0L) {
+            return Optional.empty();
+        }
+        return Optional.of(String.valueOf(roomId));
+    }
+
+    /**
+     * 单类信息的缓存，同一对象同时只有一个加载请求
+     */
+    private static class Lookup<V> {
+        private final Supplier<Duration> ttl;
+        private final Supplier<Duration> negativeTtl;
+        private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<Optional<V>>> loading = new ConcurrentHashMap<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong loads = new AtomicLong();
+
+        private Lookup(Supplier<Duration> ttl, Supplier<Duration> negativeTtl) {
+            this.ttl = ttl;
+            this.negativeTtl = negativeTtl;
+        }
+
+        private CompletableFuture<Optional<V>> get(String key, Supplier<CompletableFuture<Optional<V>>> loader) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() < entry.expireAt) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(entry.value);
+            }
+            misses.incrementAndGet();
+
+            CompletableFuture<Optional<V>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<V>> existing = loading.putIfAbsent(key, future);
+            if (existing != null) {
+                return existing;
+            }
+            loads.incrementAndGet();
+            CompletableFuture<Optional<V>> load;
+            try {
+                load = loader.get();
+            } catch (RuntimeException e) {
+                load = new CompletableFuture<>();
+                load.completeExceptionally(e);
+            }
+            load.whenComplete((value, e) -> {
+                if (e == null) {
+                    Duration duration = value.isPresent() ? ttl.get() : negativeTtl.get();
+                    entries.put(key, new Entry<>(value, System.currentTimeMillis() + duration.toMillis()));
+                }
+                loading.remove(key, future);
+                if (e == null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            });
+            return future;
+        }
+
+        private Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("size", entries.size());
+            stats.put("negative", entries.values().stream().filter(entry -> !entry.value.isPresent()).count());
+            stats.put("hits", hits.get());
+            stats.put("misses", misses.get());
+            stats.put("loads", loads.get());
+            return stats;
+        }
+    }
+
+    private static class Entry<V> {
+        private final Optional<V> value;
+        private final long expireAt;
+
+        private Entry(Optional<V> value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -3,22 +3,21 @@ package io.cruii.bilibili.component;
 import cn.hutool.core.io.IORuntimeException;
 import cn.hutool.http.HttpException;
 import cn.hutool.json.JSONObject;
-import com.github.rholder.retry.*;
 import io.cruii.bilibili.context.BilibiliUserContext;
 import io.cruii.bilibili.entity.BilibiliUser;
+import io.cruii.bilibili.exception.BilibiliApiUnavailableException;
 import io.cruii.bilibili.exception.BilibiliCookieExpiredException;
 import io.cruii.bilibili.task.*;
 import lombok.extern.log4j.Log4j2;
 import org.slf4j.MDC;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author cruii
@@ -28,63 +27,115 @@ import java.util.concurrent.TimeUnit;
 public class TaskExecutor {
     private final List<Task> taskList = new ArrayList<>();
     private final BilibiliDelegate delegate;
+    private final BilibiliUser user;
+    private final TaskLedger.Record ledger;
 
-    public TaskExecutor(BilibiliDelegate delegate) {
+    public TaskExecutor(BilibiliDelegate delegate, BilibiliUser user, TaskLedger.Record ledger) {
         this.delegate = delegate;
-        taskList.add(new WatchVideoTask(delegate));
-        taskList.add(new MangaTask(delegate));
-        taskList.add(new DonateCoinTask(delegate));
-        taskList.add(new Silver2CoinTask(delegate));
-        taskList.add(new LiveCheckIn(delegate));
-        taskList.add(new DonateGiftTask(delegate));
-        taskList.add(new ChargeTask(delegate));
-        taskList.add(new GetVipPrivilegeTask(delegate));
-        taskList.add(new ReadMangaTask(delegate));
+        this.user = user;
+        this.ledger = ledger;
+        addTask(WatchVideoTask.class, WatchVideoTask::new);
+        addTask(MangaTask.class, MangaTask::new);
+        addTask(DonateCoinTask.class, DonateCoinTask::new);
+        addTask(Silver2CoinTask.class, Silver2CoinTask::new);
+        addTask(LiveCheckIn.class, LiveCheckIn::new);
+        addTask(DonateGiftTask.class, DonateGiftTask::new);
+        addTask(ChargeTask.class, ChargeTask::new);
+        addTask(GetVipPrivilegeTask.class, GetVipPrivilegeTask::new);
+        addTask(ReadMangaTask.class, ReadMangaTask::new);
     }
 
-    public BilibiliUser execute() {
-        Collections.shuffle(taskList);
+    /**
+     * 今日已完成的任务不再创建，部分任务在创建时就会发起请求
+     */
+    private <T extends Task> void addTask(Class<T> type, Function<BilibiliDelegate, T> factory) {
+        if (ledger.isCompleted(type)) {
+            log.info("[{}]今日已完成，跳过", type.getSimpleName());
+            return;
+        }
+        taskList.add(factory.apply(delegate));
+    }
+
+    /**
+     * 异步执行所有任务，没有依赖关系的任务在并行数限制内同时执行，
+     * 任务完成后的间隔由 {@link TaskPacer} 计时，等待期间不占用工作线程
+     *
+     * @param executor    执行任务的线程池
+     * @param pacer       任务间隔控制
+     * @param parallelism 单个账号同时执行的任务数上限
+     * @return 执行完成后的用户信息
+     */
+    public CompletableFuture<BilibiliUser> executeAsync(Executor executor, TaskPacer pacer, int parallelism) {
         taskList.add(new GetCoinChangeLogTask(delegate));
         taskList.add(new CheckCookieTask(delegate));
-        Collections.reverse(taskList);
+        Collections.shuffle(taskList);
+
+        return new TaskGraph(taskList)
+                .run(task -> CompletableFuture
+                        .supplyAsync(() -> runTask(task), executor)
+                        .thenCompose(expired -> Boolean.TRUE.equals(expired) ?
+                                CompletableFuture.completedFuture(true) :
+                                pacer.after(task).thenApply(v -> false)), parallelism)
+                .thenApplyAsync(expired -> inContext(() -> finish(expired)), executor);
+    }
 
-        boolean expired = false;
-        for (Task task : taskList) {
+    /**
+     * 执行单个任务
+     *
+     * @param task 任务
+     * @return Cookie是否已失效
+     */
+    private boolean runTask(Task task) {
+        return inContext(() -> {
             try {
                 log.info("[{}]", task.getName());
                 task.run();
-                TimeUnit.SECONDS.sleep(3L);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                if (task.isCompleted()) {
+                    ledger.complete(task.getClass());
+                }
             } catch (BilibiliCookieExpiredException e) {
-                expired = true;
-                break;
+                return true;
+            } catch (BilibiliApiUnavailableException e) {
+                log.error("[{}]任务执行失败：{} ❌", task.getName(), e.getMessage());
             } catch (Exception e) {
                 log.error("[{}]任务执行失败", task.getName(), e);
             }
-        }
-
-        BilibiliUser user = BilibiliUserContext.get();
+            return false;
+        });
+    }
 
+    private BilibiliUser finish(boolean expired) {
+        BilibiliUser result = user;
         if (!expired) {
             log.info("[所有任务已执行完成]");
 
-            user = calExp();
+            result = calExp();
         }
         PushTask pushTask = new PushTask(MDC.get("traceId"), delegate);
-        boolean result = false;
+        boolean pushed = false;
         try {
-            result = pushTask.push();
+            pushed = pushTask.push();
         } catch (IORuntimeException e) {
             e.printStackTrace();
             log.error("推送失败, {}", e.getMessage());
         }
-        log.info("账号[{}]推送结果: {}", user.getDedeuserid(), result);
+        log.info("账号[{}]推送结果: {}", result.getDedeuserid(), pushed);
 
+        return result;
+    }
 
-        BilibiliUserContext.remove();
-
-        return user;
+    /**
+     * 任务的各个步骤可能在不同的线程中执行，执行前需要恢复该账号的日志追踪ID与用户上下文
+     */
+    private <T> T inContext(Supplier<T> step) {
+        MDC.put("traceId", delegate.getConfig().getDedeuserid());
+        BilibiliUserContext.set(user);
+        try {
+            return step.get();
+        } finally {
+            BilibiliUserContext.remove();
+            MDC.remove("traceId");
+        }
     }
 
     private BilibiliUser calExp() {
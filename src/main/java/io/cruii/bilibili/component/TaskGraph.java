@@ -0,0 +1,144 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.task.Task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 单个账号的任务依赖图
+ * <p>
+ * 根据 {@link Task#dependsOn()} 声明的前置任务，在并行数限制内执行所有已就绪的任务。
+ * 某个任务返回Cookie失效时不再启动新的任务，等待执行中的任务结束后完成。
+ *
+ * @author cruii
+ * Created on 2022/01/10
+ */
+class TaskGraph {
+    private final Map<Class<? extends Task>, Node> nodes = new LinkedHashMap<>();
+    private final Deque<Node> ready = new ArrayDeque<>();
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+    private Function<Task, CompletableFuture<Boolean>> runner;
+    private int parallelism;
+    private int running;
+    private int remaining;
+    private boolean expired;
+
+    TaskGraph(List<Task> tasks) {
+        for (Task task : tasks) {
+            nodes.put(task.getClass(), new Node(task));
+        }
+        for (Node node : nodes.values()) {
+            for (Class<? extends Task> dependency : node.task.dependsOn()) {
+                Node prerequisite = nodes.get(dependency);
+                // 未加入本次执行的前置任务视为已完成
+                if (prerequisite != null && prerequisite != node) {
+                    prerequisite.dependents.add(node);
+                    node.pending++;
+                }
+            }
+        }
+        for (Node node : nodes.values()) {
+            if (node.pending == 0) {
+                ready.add(node);
+            }
+        }
+        checkAcyclic();
+        remaining = nodes.size();
+    }
+
+    /**
+     * 执行所有任务
+     *
+     * @param runner      执行单个任务，返回Cookie是否已失效
+     * @param parallelism 同时执行的任务数上限
+     * @return 所有任务结束后完成，值为Cookie是否已失效
+     */
+    CompletableFuture<Boolean> run(Function<Task, CompletableFuture<Boolean>> runner, int parallelism) {
+        this.runner = runner;
+        this.parallelism = Math.max(1, parallelism);
+        launch();
+        return completion;
+    }
+
+    private void launch() {
+        List<Node> started = new ArrayList<>();
+        boolean finished;
+        synchronized (this) {
+            while (!expired && running < parallelism && !ready.isEmpty()) {
+                started.add(ready.poll());
+                running++;
+            }
+            finished = running == 0 && (expired || remaining == 0);
+        }
+
+        if (finished) {
+            completion.complete(expired);
+            return;
+        }
+
+        for (Node node : started) {
+            CompletableFuture<Boolean> future;
+            try {
+                future = runner.apply(node.task);
+            } catch (Exception e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            // 单个任务异常不影响后续任务，与Cookie失效区分处理
+            future.whenComplete((result, e) -> onFinished(node, Boolean.TRUE.equals(result)));
+        }
+    }
+
+    private void onFinished(Node node, boolean cookieExpired) {
+        synchronized (this) {
+            running--;
+            remaining--;
+            if (cookieExpired) {
+                expired = true;
+            }
+            for (Node dependent : node.dependents) {
+                if (--dependent.pending == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        launch();
+    }
+
+    private void checkAcyclic() {
+        Map<Node, Integer> pending = new LinkedHashMap<>();
+        nodes.values().forEach(node -> pending.put(node, node.pending));
+        Deque<Node> queue = new ArrayDeque<>(ready);
+        int visited = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            visited++;
+            for (Node dependent : node.dependents) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        if (visited != nodes.size()) {
+            throw new IllegalStateException("任务之间存在循环依赖");
+        }
+    }
+
+    private static class Node {
+        private final Task task;
+        private final List<Node> dependents = new ArrayList<>();
+        private int pending;
+
+        private Node(Task task) {
+            this.task = task;
+        }
+    }
+}
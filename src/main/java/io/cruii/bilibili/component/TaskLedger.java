@@ -0,0 +1,105 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.task.*;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 账号每日任务完成台账
+ * <p>
+ * 每个任务在 {@code task_run.completed_tasks} 中对应一位，任务目标达成或今日无需执行时置位。
+ * 当日再次执行该账号时（重启恢复、手动触发、租约接管）跳过已完成的任务，
+ * 全部完成的账号不再发起任何请求。
+ *
+ * @author cruii
+ * Created on 2022/01/17
+ */
+@Component
+@Log4j2
+public class TaskLedger {
+    /**
+     * 记录在台账中的任务，下标即为对应的位。只能在末尾追加，调整顺序会使当日已有的记录错位
+     */
+    private static final List<Class<? extends Task>> TASKS = Arrays.asList(
+            WatchVideoTask.class,
+            MangaTask.class,
+            DonateCoinTask.class,
+            Silver2CoinTask.class,
+            LiveCheckIn.class,
+            DonateGiftTask.class,
+            ChargeTask.class,
+            GetVipPrivilegeTask.class,
+            ReadMangaTask.class);
+
+    private static final long ALL_COMPLETED = (1L << TASKS.size()) - 1;
+
+    private final TaskRunStore taskRunStore;
+
+    public TaskLedger(TaskRunStore taskRunStore) {
+        this.taskRunStore = taskRunStore;
+    }
+
+    /**
+     * 读取账号今日的台账
+     *
+     * @param dedeuserid B站uid
+     * @return 台账
+     */
+    public Record load(String dedeuserid) {
+        return new Record(dedeuserid, taskRunStore.getCompletedTasks(dedeuserid));
+    }
+
+    /**
+     * 清空账号今日的台账，任务配置变更后所有任务需要重新执行
+     *
+     * @param dedeuserid B站uid
+     */
+    public void reset(String dedeuserid) {
+        taskRunStore.saveCompletedTasks(dedeuserid, 0L);
+    }
+
+    private static long bitOf(Class<? extends Task> type) {
+        int index = TASKS.indexOf(type);
+        return index < 0 ? 0L : 1L << index;
+    }
+
+    /**
+     * 单个账号今日的台账，同一账号的任务可能并行完成，写入时串行化以免覆盖
+     */
+    public class Record {
+        private final String dedeuserid;
+        private long completed;
+
+        private Record(String dedeuserid, long completed) {
+            this.dedeuserid = dedeuserid;
+            this.completed = completed;
+        }
+
+        /**
+         * 任务今日是否已完成，未记录在台账中的任务每次都需要执行
+         */
+        public synchronized boolean isCompleted(Class<? extends Task> type) {
+            long bit = bitOf(type);
+            return bit != 0 && (completed & bit) == bit;
+        }
+
+        public synchronized boolean isAllCompleted() {
+            return (completed & ALL_COMPLETED) == ALL_COMPLETED;
+        }
+
+        /**
+         * 记录任务今日已完成
+         */
+        public synchronized void complete(Class<? extends Task> type) {
+            long bit = bitOf(type);
+            if (bit == 0 || (completed & bit) == bit) {
+                return;
+            }
+            completed |= bit;
+            taskRunStore.saveCompletedTasks(dedeuserid, completed);
+        }
+    }
+}
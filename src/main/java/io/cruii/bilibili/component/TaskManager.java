@@ -1,47 +1,194 @@
 package io.cruii.bilibili.component;
 
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.constant.TaskPriority;
 import io.cruii.bilibili.entity.TaskConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * 任务队列
+ * <p>
+ * 按优先级分为多个无锁队列，同一账号在队列中只会存在一份：
+ * 重复放入时只更新配置，优先级更高时迁移到高优先级队列，原队列中的旧元素在取出时被跳过。
+ * 账号取出后到 {@link #finished(String)} 之前视为执行中，期间放入会被拒绝，不依赖数据库租约的时效。
+ * 取出时通过 {@link Semaphore} 等待，不依赖全局的对象锁
+ *
  * @author cruii
  * Created on 2021/12/15
  */
 @Component
 @Slf4j
 public class TaskManager {
-    private final BlockingQueue<TaskConfig> tasks = new LinkedBlockingQueue<>();
+    /**
+     * 执行中的账号在 {@link #queued} 中的占位
+     */
+    private static final Entry RUNNING = new Entry(null, null);
+
+    private final Map<TaskPriority, Queue<Entry>> queues = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, AtomicInteger> depths = new EnumMap<>(TaskPriority.class);
+    private final ConcurrentHashMap<String, Entry> queued = new ConcurrentHashMap<>();
+    private final Semaphore available = new Semaphore(0);
+
+    private final TaskRunStore taskRunStore;
+    private final TaskClusterConfig clusterConfig;
+
+    public TaskManager(TaskRunStore taskRunStore,
+                       TaskClusterConfig clusterConfig) {
+        this.taskRunStore = taskRunStore;
+        this.clusterConfig = clusterConfig;
+        for (TaskPriority priority : TaskPriority.values()) {
+            queues.put(priority, new ConcurrentLinkedQueue<>());
+            depths.put(priority, new AtomicInteger());
+        }
+    }
 
     public void put(TaskConfig taskConfig) {
-        tasks.add(taskConfig);
+        put(taskConfig, TaskPriority.NORMAL);
+    }
+
+    public void put(TaskConfig taskConfig, TaskPriority priority) {
+        String dedeuserid = taskConfig.getDedeuserid();
+        // 与取出时的替换互斥，已被取出的元素不会再被更新
+        Entry existing = queued.computeIfPresent(dedeuserid, (k, entry) -> {
+            if (entry != RUNNING && entry.priority.compareTo(priority) <= 0) {
+                entry.taskConfig = taskConfig;
+            }
+            return entry;
+        });
+        if (existing == RUNNING) {
+            log.debug("账号[{}]正在执行", dedeuserid);
+            return;
+        }
+        if (existing != null && existing.priority.compareTo(priority) <= 0) {
+            // 已在队列中，只更新为最新的配置
+            log.debug("账号[{}]已在队列中", dedeuserid);
+            return;
+        }
+
+        if (!taskRunStore.pending(dedeuserid, LocalDateTime.now())) {
+            log.debug("账号[{}]正在执行，租约未过期", dedeuserid);
+            return;
+        }
+        if (clusterConfig.isEnabled() && !taskRunStore.claim(dedeuserid)) {
+            log.debug("账号[{}]已被其他节点领取", dedeuserid);
+            return;
+        }
+        enqueue(taskConfig, priority);
     }
 
     public void putAll(List<TaskConfig> taskConfigs) {
-        tasks.addAll(taskConfigs);
+        taskConfigs.forEach(this::put);
     }
 
-    public synchronized TaskConfig get() {
-        TaskConfig taskConfig = null;
+    /**
+     * 放入已由当前节点领取的账号，执行记录已存在，无需再次持久化
+     *
+     * @param taskConfig 任务配置
+     */
+    void putClaimed(TaskConfig taskConfig) {
+        enqueue(taskConfig, TaskPriority.NORMAL);
+    }
+
+    public TaskConfig get() {
         try {
-            taskConfig = tasks.take();
+            while (true) {
+                available.acquire();
+                Entry entry = poll();
+                // 已被迁移到更高优先级队列的旧元素直接跳过
+                if (entry != null && queued.replace(entry.taskConfig.getDedeuserid(), entry, RUNNING)) {
+                    depths.get(entry.priority).decrementAndGet();
+                    log.debug("当前剩余任务数量：{}", size());
+                    return entry.taskConfig;
+                }
+            }
         } catch (InterruptedException e) {
-            e.printStackTrace();
             Thread.currentThread().interrupt();
+            return null;
         }
-        log.debug("当前剩余任务数量：{}", tasks.size());
-        return taskConfig;
+    }
+
+    /**
+     * 账号执行结束，之后可以再次放入
+     *
+     * @param dedeuserid B站uid
+     */
+    public void finished(String dedeuserid) {
+        queued.remove(dedeuserid, RUNNING);
     }
 
     public boolean isEmpty() {
-        return tasks.isEmpty();
+        return size() == 0;
     }
 
     public int size() {
-        return tasks.size();
+        return depths.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * 各优先级队列中等待执行的账号数
+     *
+     * @return 队列深度
+     */
+    public Map<TaskPriority, Integer> depth() {
+        Map<TaskPriority, Integer> depth = new EnumMap<>(TaskPriority.class);
+        depths.forEach((priority, count) -> depth.put(priority, count.get()));
+        return depth;
+    }
+
+    private void enqueue(TaskConfig taskConfig, TaskPriority priority) {
+        Entry entry = new Entry(taskConfig, priority);
+        Entry[] replaced = new Entry[1];
+        boolean added = queued.compute(taskConfig.getDedeuserid(), (dedeuserid, existing) -> {
+            if (existing == RUNNING) {
+                return existing;
+            }
+            if (existing != null && existing.priority.compareTo(priority) <= 0) {
+                existing.taskConfig = taskConfig;
+                return existing;
+            }
+            replaced[0] = existing;
+            return entry;
+        }) == entry;
+        if (!added) {
+            return;
+        }
+
+        if (replaced[0] != null) {
+            depths.get(replaced[0].priority).decrementAndGet();
+        }
+        depths.get(priority).incrementAndGet();
+        queues.get(priority).add(entry);
+        available.release();
+    }
+
+    private Entry poll() {
+        for (TaskPriority priority : TaskPriority.values()) {
+            Entry entry = queues.get(priority).poll();
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+        private final TaskPriority priority;
+        private volatile TaskConfig taskConfig;
+
+        private Entry(TaskConfig taskConfig, TaskPriority priority) {
+            this.taskConfig = taskConfig;
+            this.priority = priority;
+        }
     }
 }
@@ -0,0 +1,56 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.TaskPipelineConfig;
+import io.cruii.bilibili.task.Task;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 任务间隔控制
+ * <p>
+ * 使用调度器计时代替 {@code Thread.sleep}，等待期间不占用工作线程
+ *
+ * @author cruii
+ * Created on 2022/01/08
+ */
+@Component
+public class TaskPacer {
+    private final ThreadPoolTaskScheduler pacingScheduler;
+    private final TaskPipelineConfig pipelineConfig;
+
+    public TaskPacer(ThreadPoolTaskScheduler pacingScheduler,
+                     TaskPipelineConfig pipelineConfig) {
+        this.pacingScheduler = pacingScheduler;
+        this.pipelineConfig = pipelineConfig;
+    }
+
+    /**
+     * 在任务完成后等待配置的间隔
+     *
+     * @param task 刚完成的任务
+     * @return 间隔结束后完成的 {@link CompletableFuture}
+     */
+    public CompletableFuture<Void> after(Task task) {
+        return delay(pipelineConfig.getTaskInterval(task.getClass().getSimpleName()));
+    }
+
+    /**
+     * 延迟指定时长
+     *
+     * @param duration 时长
+     * @return 到期后完成的 {@link CompletableFuture}
+     */
+    public CompletableFuture<Void> delay(Duration duration) {
+        if (duration == null || duration.isZero() || duration.isNegative()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pacingScheduler.schedule(() -> future.complete(null),
+                new Date(System.currentTimeMillis() + duration.toMillis()));
+        return future;
+    }
+}
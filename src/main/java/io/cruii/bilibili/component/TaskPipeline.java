@@ -0,0 +1,280 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.TaskPipelineConfig;
+import io.cruii.bilibili.constant.TaskPriority;
+import io.cruii.bilibili.entity.BilibiliUser;
+import io.cruii.bilibili.entity.TaskConfig;
+import io.cruii.bilibili.exception.BilibiliUserNotFoundException;
+import io.cruii.bilibili.mapper.BilibiliUserMapper;
+import io.cruii.bilibili.mapper.TaskConfigMapper;
+import lombok.extern.log4j.Log4j2;
+import org.slf4j.MDC;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 账号任务流水线
+ * <p>
+ * 由一个调度线程从 {@link TaskManager} 中取出账号，以异步的方式提交到线程池中执行。
+ * 同时执行中的账号数由 {@link TaskPipelineConfig#getMaxInFlight()} 控制，与工作线程数无关。
+ * <p>
+ * 单个账号的异常只影响该账号，在重试次数内以 {@link TaskPriority#RETRY} 重新放入任务队列；
+ * 调度线程意外退出时由定时巡检重新拉起。
+ *
+ * @author cruii
+ * Created on 2022/01/06
+ */
+@Component
+@Log4j2
+public class TaskPipeline {
+    private static final long SUPERVISE_INTERVAL = 10000L;
+
+    private final TaskManager taskManager;
+    private final TaskRunStore taskRunStore;
+    private final TaskLedger taskLedger;
+    private final BilibiliUserMapper bilibiliUserMapper;
+    private final TaskConfigMapper taskConfigMapper;
+    private final ThreadPoolTaskExecutor bilibiliExecutor;
+    private final ThreadPoolTaskScheduler pacingScheduler;
+    private final TaskPacer taskPacer;
+    private final TaskPipelineConfig pipelineConfig;
+
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+
+    private volatile Thread dispatcher;
+    private volatile boolean stopped;
+
+    public TaskPipeline(TaskManager taskManager,
+                        TaskRunStore taskRunStore,
+                        TaskLedger taskLedger,
+                        BilibiliUserMapper bilibiliUserMapper,
+                        TaskConfigMapper taskConfigMapper,
+                        ThreadPoolTaskExecutor bilibiliExecutor,
+                        ThreadPoolTaskScheduler pacingScheduler,
+                        TaskPacer taskPacer,
+                        TaskPipelineConfig pipelineConfig) {
+        this.taskManager = taskManager;
+        this.taskRunStore = taskRunStore;
+        this.taskLedger = taskLedger;
+        this.bilibiliUserMapper = bilibiliUserMapper;
+        this.taskConfigMapper = taskConfigMapper;
+        this.bilibiliExecutor = bilibiliExecutor;
+        this.pacingScheduler = pacingScheduler;
+        this.taskPacer = taskPacer;
+        this.pipelineConfig = pipelineConfig;
+        this.permits = new Semaphore(pipelineConfig.getMaxInFlight());
+    }
+
+    @PostConstruct
+    public void start() {
+        startDispatcher();
+        pacingScheduler.scheduleWithFixedDelay(this::supervise, SUPERVISE_INTERVAL);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        dispatcher.interrupt();
+    }
+
+    /**
+     * 当前执行中的账号数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 流水线运行状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dispatcherAlive", dispatcher.isAlive());
+        stats.put("dispatcherRestarts", restarts.get());
+        stats.put("activeWorkers", bilibiliExecutor.getActiveCount());
+        stats.put("poolSize", bilibiliExecutor.getPoolSize());
+        stats.put("inFlight", inFlight.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("retried", retried.get());
+        return stats;
+    }
+
+    private void startDispatcher() {
+        Thread thread = new Thread(this::dispatch, "bilibili-dispatcher");
+        thread.setDaemon(true);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    /**
+     * 巡检调度线程，意外退出时重新拉起
+     */
+    private void supervise() {
+        if (stopped || dispatcher.isAlive()) {
+            return;
+        }
+        restarts.incrementAndGet();
+        log.error("任务调度线程已退出，重新启动");
+        startDispatcher();
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            TaskConfig taskConfig = null;
+            try {
+                taskConfig = taskManager.get();
+                if (taskConfig == null) {
+                    permits.release();
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                TaskConfig current = taskConfig;
+                withDeadline(submit(taskConfig), taskConfig.getDedeuserid())
+                        .whenComplete((user, e) -> complete(current, e));
+            } catch (RuntimeException e) {
+                // 提交失败时没有回调，在这里归还许可
+                if (taskConfig != null) {
+                    complete(taskConfig, e);
+                } else {
+                    permits.release();
+                }
+                log.error("任务调度异常", e);
+            }
+        }
+        log.info("任务调度线程已停止");
+    }
+
+    /**
+     * 账号执行结束，无论是否成功都需要归还许可
+     */
+    private void complete(TaskConfig taskConfig, Throwable e) {
+        String dedeuserid = taskConfig.getDedeuserid();
+        taskManager.finished(dedeuserid);
+        try {
+            taskRunStore.finish(dedeuserid, e == null);
+            if (e == null) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                retry(dedeuserid, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        } catch (RuntimeException ex) {
+            log.error("账号[{}]执行结果记录失败", dedeuserid, ex);
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * 执行异常的账号在重试次数内延迟后重新放入任务队列
+     */
+    private void retry(String dedeuserid, Throwable cause) {
+        if (cause instanceof BilibiliUserNotFoundException) {
+            log.error("账号[{}]任务执行异常，用户不存在，不再重试", dedeuserid);
+            return;
+        }
+        int attempts = taskRunStore.getAttempts(dedeuserid);
+        if (attempts >= pipelineConfig.getMaxAttempts()) {
+            log.error("账号[{}]任务执行异常，今日已执行{}次，不再重试", dedeuserid, attempts, cause);
+            return;
+        }
+        log.error("账号[{}]任务执行异常，{}后重试", dedeuserid, pipelineConfig.getRetryDelay(), cause);
+        retried.incrementAndGet();
+        taskPacer.delay(pipelineConfig.getRetryDelay()).thenRun(() -> {
+            try {
+                // 重新读取配置，等待期间更新的Cookie可以生效
+                TaskConfig taskConfig = taskConfigMapper.selectById(dedeuserid);
+                if (taskConfig != null) {
+                    taskManager.put(taskConfig, TaskPriority.RETRY);
+                }
+            } catch (RuntimeException e) {
+                log.error("账号[{}]重新放入任务队列失败", dedeuserid, e);
+            }
+        });
+    }
+
+    /**
+     * 超过账号执行总时长时以 {@link TimeoutException} 结束，不再等待仍在执行的任务。
+     * 账号的 {@link BilibiliDelegate} 同样在到期后拒绝新的请求，剩余任务会很快结束
+     */
+    private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, String dedeuserid) {
+        Duration deadline = pipelineConfig.getAccountDeadline();
+        ScheduledFuture<?> timer = pacingScheduler.schedule(
+                () -> future.completeExceptionally(new TimeoutException("账号[" + dedeuserid + "]执行超过" + deadline)),
+                new Date(System.currentTimeMillis() + deadline.toMillis()));
+        future.whenComplete((result, e) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+     * 异步执行单个账号的所有任务
+     *
+     * @param taskConfig 任务配置
+     * @return 执行完成后的用户信息，今日任务已全部完成时为null
+     */
+    private CompletableFuture<BilibiliUser> submit(TaskConfig taskConfig) {
+        String traceId = taskConfig.getDedeuserid();
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    MDC.put("traceId", traceId);
+                    try {
+                        taskRunStore.running(traceId);
+                        TaskLedger.Record ledger = taskLedger.load(traceId);
+                        if (ledger.isAllCompleted()) {
+                            log.info("今日任务已全部完成，跳过该账号");
+                            return null;
+                        }
+                        BilibiliDelegate delegate = new BilibiliDelegate(taskConfig);
+                        delegate.setDeadline(pipelineConfig.getAccountDeadline());
+                        BilibiliUser user = delegate.getUser();
+                        if (user == null) {
+                            throw new BilibiliUserNotFoundException(traceId);
+                        }
+                        return new TaskExecutor(delegate, user, ledger);
+                    } finally {
+                        MDC.remove("traceId");
+                    }
+                }, bilibiliExecutor)
+                .thenCompose(taskExecutor -> taskExecutor == null ?
+                        CompletableFuture.completedFuture(null) :
+                        taskExecutor.executeAsync(bilibiliExecutor, taskPacer, pipelineConfig.getAccountParallelism()))
+                .thenApply(user -> {
+                    if (user == null) {
+                        return null;
+                    }
+                    user.setLastRunTime(LocalDateTime.now());
+                    bilibiliUserMapper.updateById(user);
+                    return user;
+                });
+    }
+}
@@ -0,0 +1,97 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.config.TaskPipelineConfig;
+import io.cruii.bilibili.entity.TaskConfig;
+import io.cruii.bilibili.mapper.TaskConfigMapper;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 多节点模式下按本节点的空闲容量从数据库领取账号；
+ * 单节点模式同样定时为执行中的账号续租，执行时间超过租约时长的账号不会被 {@link TaskRunStore#pending} 重新放入
+ *
+ * @author cruii
+ * Created on 2022/01/17
+ */
+@Component
+@Log4j2
+public class TaskRunClaimer {
+    private final TaskRunStore taskRunStore;
+    private final TaskManager taskManager;
+    private final TaskPipeline taskPipeline;
+    private final TaskConfigMapper taskConfigMapper;
+    private final TaskClusterConfig clusterConfig;
+    private final TaskPipelineConfig pipelineConfig;
+    private final ThreadPoolTaskScheduler pacingScheduler;
+
+    public TaskRunClaimer(TaskRunStore taskRunStore,
+                          TaskManager taskManager,
+                          TaskPipeline taskPipeline,
+                          TaskConfigMapper taskConfigMapper,
+                          TaskClusterConfig clusterConfig,
+                          TaskPipelineConfig pipelineConfig,
+                          ThreadPoolTaskScheduler pacingScheduler) {
+        this.taskRunStore = taskRunStore;
+        this.taskManager = taskManager;
+        this.taskPipeline = taskPipeline;
+        this.taskConfigMapper = taskConfigMapper;
+        this.clusterConfig = clusterConfig;
+        this.pipelineConfig = pipelineConfig;
+        this.pacingScheduler = pacingScheduler;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        pacingScheduler.scheduleWithFixedDelay(this::renew, clusterConfig.getLeaseDuration().toMillis() / 3);
+        if (!clusterConfig.isEnabled()) {
+            return;
+        }
+        log.info("多节点模式已启用，当前节点：{}", clusterConfig.getNodeId());
+        pacingScheduler.scheduleWithFixedDelay(this::claim, clusterConfig.getPollInterval().toMillis());
+    }
+
+    private void claim() {
+        try {
+            int capacity = pipelineConfig.getMaxInFlight() - taskPipeline.getInFlight() - taskManager.size();
+            if (capacity <= 0) {
+                return;
+            }
+            List<String> claimed = taskRunStore.claim(Math.min(capacity, clusterConfig.getBatchSize()));
+            if (claimed.isEmpty()) {
+                return;
+            }
+            Map<String, TaskConfig> taskConfigs = taskConfigMapper.selectBatchIds(claimed)
+                    .stream()
+                    .collect(Collectors.toMap(TaskConfig::getDedeuserid, Function.identity(), (a, b) -> a));
+            claimed.forEach(dedeuserid -> {
+                TaskConfig taskConfig = taskConfigs.get(dedeuserid);
+                if (taskConfig == null) {
+                    // 领取后任务已被删除
+                    taskRunStore.finish(dedeuserid, false);
+                } else {
+                    taskManager.putClaimed(taskConfig);
+                }
+            });
+            log.debug("本次领取账号{}个", claimed.size());
+        } catch (Exception e) {
+            log.error("领取账号失败", e);
+        }
+    }
+
+    private void renew() {
+        try {
+            taskRunStore.renewLeases();
+        } catch (Exception e) {
+            log.error("续租失败", e);
+        }
+    }
+}
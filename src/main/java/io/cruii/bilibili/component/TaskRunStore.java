@@ -0,0 +1,268 @@
+package io.cruii.bilibili.component;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.constant.TaskRunStatus;
+import io.cruii.bilibili.entity.TaskRun;
+import io.cruii.bilibili.mapper.TaskRunMapper;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 持久化账号每日任务的执行状态，服务重启后只需恢复未完成的账号
+ * <p>
+ * 多节点模式下，节点通过条件更新抢占执行记录的租约，只有更新成功的节点才会执行该账号，
+ * 租约过期的记录可以被其他节点接管
+ *
+ * @author cruii
+ * Created on 2022/01/14
+ */
+@Component
+@Log4j2
+public class TaskRunStore {
+    private final TaskRunMapper taskRunMapper;
+    private final TaskClusterConfig clusterConfig;
+
+    public TaskRunStore(TaskRunMapper taskRunMapper,
+                        TaskClusterConfig clusterConfig) {
+        this.taskRunMapper = taskRunMapper;
+        this.clusterConfig = clusterConfig;
+    }
+
+    /**
+     * 记录账号今日等待执行，租约未过期的执行中记录保持不变
+     *
+     * @param dedeuserid  B站uid
+     * @param releaseTime 放入任务队列的时间
+     * @return 是否已记录为等待执行，账号正在某个节点执行时为false
+     */
+    public boolean pending(String dedeuserid, LocalDateTime releaseTime) {
+        TaskRun run = find(dedeuserid);
+        if (run == null) {
+            if (insert(dedeuserid, releaseTime)) {
+                return true;
+            }
+            // 并发插入时以已存在的记录为准
+            run = find(dedeuserid);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LambdaUpdateWrapper<TaskRun> update = Wrappers.lambdaUpdate(TaskRun.class)
+                .set(TaskRun::getStatus, TaskRunStatus.PENDING)
+                .set(TaskRun::getReleaseTime, releaseTime)
+                .set(TaskRun::getUpdateTime, now)
+                .eq(TaskRun::getId, run.getId())
+                .and(w -> w.ne(TaskRun::getStatus, TaskRunStatus.RUNNING)
+                        .or().isNull(TaskRun::getLeaseUntil)
+                        .or().lt(TaskRun::getLeaseUntil, now));
+        return taskRunMapper.update(null, update) == 1;
+    }
+
+    /**
+     * 账号今日没有执行记录时才创建，已被其他节点创建或领取的记录保持不变
+     *
+     * @param dedeuserid  B站uid
+     * @param releaseTime 放入任务队列的时间
+     */
+    public void createIfAbsent(String dedeuserid, LocalDateTime releaseTime) {
+        if (find(dedeuserid) == null) {
+            insert(dedeuserid, releaseTime);
+        }
+    }
+
+    /**
+     * 记录账号开始执行，并由当前节点持有租约
+     *
+     * @param dedeuserid B站uid
+     */
+    public void running(String dedeuserid) {
+        TaskRun run = find(dedeuserid);
+        if (run == null) {
+            insert(dedeuserid, LocalDateTime.now());
+            run = find(dedeuserid);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        TaskRun update = new TaskRun();
+        update.setId(run.getId());
+        update.setStatus(TaskRunStatus.RUNNING);
+        update.setAttempts(run.getAttempts() + 1);
+        update.setOwner(clusterConfig.getNodeId());
+        update.setLeaseUntil(now.plus(clusterConfig.getLeaseDuration()));
+        update.setUpdateTime(now);
+        taskRunMapper.updateById(update);
+    }
+
+    /**
+     * 查询账号今日已执行的次数
+     *
+     * @param dedeuserid B站uid
+     * @return 执行次数
+     */
+    public int getAttempts(String dedeuserid) {
+        TaskRun run = find(dedeuserid);
+        return run == null || run.getAttempts() == null ? 0 : run.getAttempts();
+    }
+
+    /**
+     * 记录账号执行结束
+     *
+     * @param dedeuserid B站uid
+     * @param success    是否执行成功
+     */
+    public void finish(String dedeuserid, boolean success) {
+        TaskRun run = find(dedeuserid);
+        if (run != null) {
+            TaskRun update = new TaskRun();
+            update.setId(run.getId());
+            update.setStatus(success ? TaskRunStatus.DONE : TaskRunStatus.FAILED);
+            update.setUpdateTime(LocalDateTime.now());
+            taskRunMapper.updateById(update);
+        }
+    }
+
+    /**
+     * 查询账号今日已完成的任务
+     *
+     * @param dedeuserid B站uid
+     * @return 已完成任务的位图
+     */
+    public long getCompletedTasks(String dedeuserid) {
+        TaskRun run = find(dedeuserid);
+        if (run == null || run.getCompletedTasks() == null) {
+            return 0L;
+        }
+        return run.getCompletedTasks();
+    }
+
+    /**
+     * 保存账号今日已完成的任务
+     *
+     * @param dedeuserid     B站uid
+     * @param completedTasks 已完成任务的位图
+     */
+    public void saveCompletedTasks(String dedeuserid, long completedTasks) {
+        taskRunMapper.update(null, Wrappers.lambdaUpdate(TaskRun.class)
+                .set(TaskRun::getCompletedTasks, completedTasks)
+                .set(TaskRun::getUpdateTime, LocalDateTime.now())
+                .eq(TaskRun::getDedeuserid, dedeuserid)
+                .eq(TaskRun::getRunDate, LocalDate.now()));
+    }
+
+    /**
+     * 查询今日尚未完成的账号，执行中的账号说明上次执行被中断，同样需要恢复
+     *
+     * @return 执行记录
+     */
+    public List<TaskRun> listUnfinished() {
+        return taskRunMapper.selectList(Wrappers.lambdaQuery(TaskRun.class)
+                .eq(TaskRun::getRunDate, LocalDate.now())
+                .in(TaskRun::getStatus, TaskRunStatus.PENDING, TaskRunStatus.RUNNING));
+    }
+
+    /**
+     * 单节点模式下服务重启后，将今日执行中的记录重置为等待执行。
+     * 只有当前节点会执行账号，执行中的记录都是重启前被中断的，不需要等待租约过期
+     *
+     * @return 重置的记录数
+     */
+    public int resetInterrupted() {
+        return taskRunMapper.update(null, Wrappers.lambdaUpdate(TaskRun.class)
+                .set(TaskRun::getStatus, TaskRunStatus.PENDING)
+                .set(TaskRun::getLeaseUntil, null)
+                .set(TaskRun::getUpdateTime, LocalDateTime.now())
+                .eq(TaskRun::getRunDate, LocalDate.now())
+                .eq(TaskRun::getStatus, TaskRunStatus.RUNNING));
+    }
+
+    /**
+     * 领取已到投放时间的等待中账号，以及租约已过期的执行中账号
+     *
+     * @param limit 最多领取的数量
+     * @return 领取成功的B站uid
+     */
+    public List<String> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LambdaQueryWrapper<TaskRun> query = Wrappers.lambdaQuery(TaskRun.class)
+                .eq(TaskRun::getRunDate, LocalDate.now())
+                .le(TaskRun::getReleaseTime, now)
+                .and(w -> w.eq(TaskRun::getStatus, TaskRunStatus.PENDING)
+                        .or(o -> o.eq(TaskRun::getStatus, TaskRunStatus.RUNNING).lt(TaskRun::getLeaseUntil, now)))
+                .orderByAsc(TaskRun::getReleaseTime)
+                .last("limit " + limit);
+
+        return taskRunMapper.selectList(query)
+                .stream()
+                .filter(run -> claim(run.getId(), now))
+                .map(TaskRun::getDedeuserid)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 领取指定账号今日的执行记录
+     *
+     * @param dedeuserid B站uid
+     * @return 是否领取成功
+     */
+    public boolean claim(String dedeuserid) {
+        TaskRun run = find(dedeuserid);
+        return run != null && claim(run.getId(), LocalDateTime.now());
+    }
+
+    /**
+     * 为当前节点执行中的账号续租
+     *
+     * @return 续租的记录数
+     */
+    public int renewLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        return taskRunMapper.update(null, Wrappers.lambdaUpdate(TaskRun.class)
+                .set(TaskRun::getLeaseUntil, now.plus(clusterConfig.getLeaseDuration()))
+                .eq(TaskRun::getOwner, clusterConfig.getNodeId())
+                .eq(TaskRun::getStatus, TaskRunStatus.RUNNING));
+    }
+
+    /**
+     * 条件更新抢占租约，只有记录仍处于可领取状态时才会更新成功
+     */
+    private boolean claim(Long id, LocalDateTime now) {
+        LambdaUpdateWrapper<TaskRun> update = Wrappers.lambdaUpdate(TaskRun.class)
+                .set(TaskRun::getStatus, TaskRunStatus.RUNNING)
+                .set(TaskRun::getOwner, clusterConfig.getNodeId())
+                .set(TaskRun::getLeaseUntil, now.plus(clusterConfig.getLeaseDuration()))
+                .set(TaskRun::getUpdateTime, now)
+                .eq(TaskRun::getId, id)
+                .and(w -> w.eq(TaskRun::getStatus, TaskRunStatus.PENDING)
+                        .or(o -> o.eq(TaskRun::getStatus, TaskRunStatus.RUNNING).lt(TaskRun::getLeaseUntil, now)));
+        return taskRunMapper.update(null, update) == 1;
+    }
+
+    private boolean insert(String dedeuserid, LocalDateTime releaseTime) {
+        TaskRun run = new TaskRun();
+        run.setDedeuserid(dedeuserid);
+        run.setRunDate(LocalDate.now());
+        run.setStatus(TaskRunStatus.PENDING);
+        run.setAttempts(0);
+        run.setCompletedTasks(0L);
+        run.setReleaseTime(releaseTime);
+        run.setUpdateTime(LocalDateTime.now());
+        try {
+            taskRunMapper.insert(run);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private TaskRun find(String dedeuserid) {
+        return taskRunMapper.selectOne(Wrappers.lambdaQuery(TaskRun.class)
+                .eq(TaskRun::getDedeuserid, dedeuserid)
+                .eq(TaskRun::getRunDate, LocalDate.now()));
+    }
+}
@@ -1,24 +1,30 @@
 package io.cruii.bilibili.component;
 
-import io.cruii.bilibili.context.BilibiliUserContext;
-import io.cruii.bilibili.entity.BilibiliUser;
+import cn.hutool.core.lang.hash.MurmurHash;
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.config.TaskScheduleConfig;
 import io.cruii.bilibili.entity.TaskConfig;
-import io.cruii.bilibili.mapper.BilibiliUserMapper;
+import io.cruii.bilibili.entity.TaskRun;
 import io.cruii.bilibili.mapper.TaskConfigMapper;
 import lombok.extern.log4j.Log4j2;
-import org.slf4j.MDC;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 
 /**
+ * 定时将所有账号放入任务队列，实际执行由 {@link TaskPipeline} 负责
+ *
  * @author cruii
  * Created on 2021/9/24
  */
@@ -29,18 +35,24 @@ public class TaskRunner {
     private static final BlockingQueue<String> TASK_QUEUE = new LinkedBlockingDeque<>();
 
     private final TaskConfigMapper taskConfigMapper;
-    private final BilibiliUserMapper bilibiliUserMapper;
-    private final ThreadPoolTaskExecutor bilibiliExecutor;
     private final TaskManager taskManager;
+    private final TaskRunStore taskRunStore;
+    private final TaskScheduleConfig scheduleConfig;
+    private final TaskClusterConfig clusterConfig;
+    private final ThreadPoolTaskScheduler pacingScheduler;
 
     public TaskRunner(TaskConfigMapper taskConfigMapper,
-                      BilibiliUserMapper bilibiliUserMapper,
-                      ThreadPoolTaskExecutor bilibiliExecutor,
-                      TaskManager taskManager) {
+                      TaskManager taskManager,
+                      TaskRunStore taskRunStore,
+                      TaskScheduleConfig scheduleConfig,
+                      TaskClusterConfig clusterConfig,
+                      ThreadPoolTaskScheduler pacingScheduler) {
         this.taskConfigMapper = taskConfigMapper;
-        this.bilibiliUserMapper = bilibiliUserMapper;
-        this.bilibiliExecutor = bilibiliExecutor;
         this.taskManager = taskManager;
+        this.taskRunStore = taskRunStore;
+        this.scheduleConfig = scheduleConfig;
+        this.clusterConfig = clusterConfig;
+        this.pacingScheduler = pacingScheduler;
     }
 
     public static BlockingQueue<String> getTaskQueue() {
@@ -50,28 +62,94 @@ public class TaskRunner {
     @Scheduled(cron = "${task.cron:0 10 0 * * ?}")
     public void run() {
         List<TaskConfig> taskConfigs = taskConfigMapper.selectList(null);
-        taskManager.putAll(taskConfigs);
+        if (clusterConfig.isEnabled()) {
+            createRuns(taskConfigs);
+            return;
+        }
+        if (scheduleConfig.getMode() != TaskScheduleConfig.Mode.SPREAD) {
+            taskManager.putAll(taskConfigs);
+            return;
+        }
+
+        long windowMillis = Math.min(scheduleConfig.getWindow().toMillis(), Duration.ofDays(1L).toMillis() - 1);
+        long start = System.currentTimeMillis();
+        taskConfigs.forEach(taskConfig -> {
+            String dedeuserid = taskConfig.getDedeuserid();
+            Date releaseTime = new Date(start + offsetOf(dedeuserid, windowMillis));
+            taskRunStore.pending(dedeuserid, LocalDateTime.ofInstant(releaseTime.toInstant(), ZoneId.systemDefault()));
+            pacingScheduler.schedule(() -> release(dedeuserid), releaseTime);
+        });
+        log.info("共{}个账号将在{}分钟内逐个放入任务队列", taskConfigs.size(), windowMillis / 60000);
     }
 
-    @SuppressWarnings("InfiniteLoopStatement")
-    @PostConstruct
-    public void init() {
-        for (int i = 0; i < 10; i++) {
-            bilibiliExecutor.execute(() -> {
-                while (true) {
-                    TaskConfig taskConfig = taskManager.get();
-                    MDC.put("traceId", taskConfig.getDedeuserid());
-                    BilibiliDelegate delegate = new BilibiliDelegate(taskConfig);
-                    BilibiliUser user = delegate.getUser();
-                    BilibiliUserContext.set(user);
+    /**
+     * 多节点模式下只创建执行记录，由各节点的 {@link TaskRunClaimer} 领取执行。
+     * 所有节点都会触发cron，已存在的记录不会被覆盖
+     */
+    private void createRuns(List<TaskConfig> taskConfigs) {
+        boolean spread = scheduleConfig.getMode() == TaskScheduleConfig.Mode.SPREAD;
+        long windowMillis = Math.min(scheduleConfig.getWindow().toMillis(), Duration.ofDays(1L).toMillis() - 1);
+        LocalDateTime start = LocalDateTime.now();
+        taskConfigs.forEach(taskConfig -> {
+            String dedeuserid = taskConfig.getDedeuserid();
+            long offset = spread ? offsetOf(dedeuserid, windowMillis) : 0;
+            taskRunStore.createIfAbsent(dedeuserid, start.plus(Duration.ofMillis(offset)));
+        });
+        log.info("已创建{}个账号的执行记录", taskConfigs.size());
+    }
 
-                    TaskExecutor taskExecutor = new TaskExecutor(delegate);
-                    user = taskExecutor.execute();
-                    user.setLastRunTime(LocalDateTime.now());
-                    bilibiliUserMapper.updateById(user);
-                }
+    /**
+     * 服务启动后恢复今日未完成的账号，未到投放时间的账号按原计划投放。
+     * 重启前执行中的账号先重置为等待执行，否则在租约过期前会被 {@link TaskRunStore#pending} 拒绝。
+     * 多节点模式下由 {@link TaskRunClaimer} 接管租约过期的账号
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        if (clusterConfig.isEnabled()) {
+            return;
+        }
+        int interrupted = taskRunStore.resetInterrupted();
+        if (interrupted > 0) {
+            log.info("重启前执行中的账号{}个已重置为等待执行", interrupted);
+        }
+        List<TaskRun> unfinished = taskRunStore.listUnfinished();
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        log.info("恢复今日未完成的账号{}个", unfinished.size());
+        LocalDateTime now = LocalDateTime.now();
+        unfinished.forEach(run -> {
+            LocalDateTime releaseTime = run.getReleaseTime();
+            if (releaseTime != null && releaseTime.isAfter(now)) {
+                pacingScheduler.schedule(() -> release(run.getDedeuserid()),
+                        Date.from(releaseTime.atZone(ZoneId.systemDefault()).toInstant()));
+            } else {
+                release(run.getDedeuserid());
+            }
+        });
+    }
+
+    /**
+     * 根据uid计算账号在时间窗口内的固定偏移量，同一账号每天的执行时间保持稳定
+     *
+     * @param dedeuserid   B站uid
+     * @param windowMillis 时间窗口
+     * @return 偏移毫秒数
+     */
+    static long offsetOf(String dedeuserid, long windowMillis) {
+        if (windowMillis <= 0) {
+            return 0;
+        }
+        return Math.floorMod(MurmurHash.hash64(dedeuserid), windowMillis);
+    }
 
-            });
+    /**
+     * 到达投放时间时重新读取配置，窗口期间更新的Cookie或删除的任务可以及时生效
+     */
+    private void release(String dedeuserid) {
+        TaskConfig taskConfig = taskConfigMapper.selectById(dedeuserid);
+        if (taskConfig != null) {
+            taskManager.put(taskConfig);
         }
     }
 }
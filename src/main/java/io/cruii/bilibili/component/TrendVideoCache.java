@@ -0,0 +1,142 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.TrendVideo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 所有账号共享的分区热榜缓存
+ * <p>
+ * 同一分区同时只有一个加载请求，其余读取等待同一结果。缓存超过刷新时间后，
+ * 由下一次读取在后台重新加载，加载完成前继续返回旧的热榜；超过缓存时长后才需要等待加载。
+ * 加载失败后 {@link CacheConfig#getTrendFailureBackoff()} 内不再重新加载，
+ * 有旧的热榜时继续返回旧的热榜，否则直接返回上次的失败，避免B站异常期间每个账号都发起请求。
+ *
+ * @author cruii
+ * Created on 2022/01/21
+ */
+@Component
+public class TrendVideoCache {
+    private final CacheConfig cacheConfig;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public TrendVideoCache(CacheConfig cacheConfig) {
+        this.cacheConfig = cacheConfig;
+    }
+
+    /**
+     * 获取分区热榜视频的BVID
+     *
+     * @param regionId 分区ID
+     * @param loader   缓存未命中时加载热榜的方法
+     * @return 热榜视频的BVID，不可修改
+     */
+    public CompletableFuture<List<String>> get(String regionId,
+                                              Function<String, CompletableFuture<BilibiliResponse<List<TrendVideo>>>> loader) {
+        Entry entry = entries.computeIfAbsent(regionId, k -> new Entry());
+        long now = System.currentTimeMillis();
+        List<String> videos = entry.videos;
+        if (videos != null && now < entry.expireAt) {
+            hits.incrementAndGet();
+            if (now >= entry.refreshAt && now >= entry.retryAt) {
+                load(entry, regionId, loader);
+            }
+            return CompletableFuture.completedFuture(videos);
+        }
+        misses.incrementAndGet();
+        Throwable failure = entry.failure;
+        if (failure != null && now < entry.retryAt) {
+            CompletableFuture<List<String>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(failure);
+            return failed;
+        }
+        return load(entry, regionId, loader);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.values().stream().filter(entry -> entry.videos != null).count());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("loads", loads.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    private CompletableFuture<List<String>> load(Entry entry, String regionId,
+                                                 Function<String, CompletableFuture<BilibiliResponse<List<TrendVideo>>>> loader) {
+        synchronized (entry) {
+            if (entry.loading != null) {
+                return entry.loading;
+            }
+            loads.incrementAndGet();
+            CompletableFuture<List<String>> loading;
+            try {
+                loading = loader.apply(regionId).thenApply(TrendVideoCache::parse);
+            } catch (RuntimeException e) {
+                loading = new CompletableFuture<>();
+                loading.completeExceptionally(e);
+            }
+            entry.loading = loading;
+            loading.whenComplete((videos, e) -> {
+                synchronized (entry) {
+                    entry.loading = null;
+                    long now = System.currentTimeMillis();
+                    if (e == null) {
+                        long ttl = cacheConfig.getTrendTtl().toMillis();
+                        entry.videos = videos;
+                        entry.refreshAt = now + ttl * 4 / 5;
+                        entry.expireAt = now + ttl;
+                        entry.failure = null;
+                        entry.retryAt = 0L;
+                    } else {
+                        // 加载失败时保留旧的热榜，直到过期
+                        failures.incrementAndGet();
+                        entry.failure = e;
+                        entry.retryAt = now + cacheConfig.getTrendFailureBackoff().toMillis();
+                    }
+                }
+            });
+            return loading;
+        }
+    }
+
+    private static List<String> parse(BilibiliResponse<List<TrendVideo>> resp) {
+        List<TrendVideo> data = resp.getData();
+        if (!resp.isSuccess() || data == null) {
+            throw new IllegalStateException("获取热榜视频失败：" + resp.getMessage());
+        }
+        List<String> videos = new ArrayList<>(data.size());
+        for (TrendVideo video : data) {
+            videos.add(video.getBvid());
+        }
+        return Collections.unmodifiableList(videos);
+    }
+
+    private static class Entry {
+        private volatile List<String> videos;
+        private volatile long refreshAt;
+        private volatile long expireAt;
+        /**
+         * 上次加载失败的原因，加载成功后清除
+         */
+        private volatile Throwable failure;
+        private volatile long retryAt;
+        private CompletableFuture<List<String>> loading;
+    }
+}
@@ -0,0 +1,88 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.VideoDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 所有账号共享的视频详情缓存
+ * <p>
+ * 按LRU淘汰，容量与缓存时长可配置，只缓存成功的响应。同一视频同时只有一个加载请求。
+ * 缓存的响应由多个账号共用，调用方只能读取。
+ *
+ * @author cruii
+ * Created on 2022/01/21
+ */
+@Component
+public class VideoDetailsCache {
+    private final LRUCache<String, BilibiliResponse<VideoDetails>> cache;
+    private final Map<String, CompletableFuture<BilibiliResponse<VideoDetails>>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+
+    public VideoDetailsCache(CacheConfig cacheConfig) {
+        this.cache = CacheUtil.newLRUCache(cacheConfig.getVideoCapacity(), cacheConfig.getVideoTtl().toMillis());
+    }
+
+    /**
+     * 获取视频详情
+     *
+     * @param bvid   视频的BVID
+     * @param loader 缓存未命中时加载视频详情的方法
+     * @return 视频详情接口的响应
+     */
+    public CompletableFuture<BilibiliResponse<VideoDetails>> get(String bvid,
+                                                               Function<String, CompletableFuture<BilibiliResponse<VideoDetails>>> loader) {
+        // 不刷新访问时间，缓存时长从加载时开始计算
+        BilibiliResponse<VideoDetails> details = cache.get(bvid, false);
+        if (details != null) {
+            return CompletableFuture.completedFuture(details);
+        }
+
+        // 加载可能同步完成，不能在computeIfAbsent中注册回调，否则回调会在映射函数内修改同一个key
+        CompletableFuture<BilibiliResponse<VideoDetails>> future = new CompletableFuture<>();
+        CompletableFuture<BilibiliResponse<VideoDetails>> existing = loading.putIfAbsent(bvid, future);
+        if (existing != null) {
+            return existing;
+        }
+        loads.incrementAndGet();
+        CompletableFuture<BilibiliResponse<VideoDetails>> load;
+        try {
+            load = loader.apply(bvid);
+        } catch (RuntimeException e) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(e);
+        }
+        load.whenComplete((resp, e) -> {
+            if (e == null && resp.isSuccess()) {
+                cache.put(bvid, resp);
+            }
+            loading.remove(bvid, future);
+            if (e == null) {
+                future.complete(resp);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("capacity", cache.capacity());
+        stats.put("hits", cache.getHitCount());
+        stats.put("misses", cache.getMissCount());
+        stats.put("loads", loads.get());
+        return stats;
+    }
+}
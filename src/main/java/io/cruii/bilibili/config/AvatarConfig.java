@@ -0,0 +1,34 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 头像同步配置
+ *
+ * @author cruii
+ * Created on 2022/01/25
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.avatar")
+public class AvatarConfig {
+
+    /**
+     * 头像文件与索引的本地目录
+     */
+    private String dir = "avatars";
+
+    /**
+     * 同一头像地址超过该时长后发送条件请求确认内容未变化
+     */
+    private Duration revalidateAfter = Duration.ofDays(7L);
+
+    /**
+     * 索引变化后延迟该时长再写入文件，期间的变化合并为一次写入
+     */
+    private Duration flushDelay = Duration.ofSeconds(5L);
+}
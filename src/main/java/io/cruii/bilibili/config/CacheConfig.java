@@ -0,0 +1,54 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 跨账号共享的B站数据缓存配置
+ *
+ * @author cruii
+ * Created on 2022/01/21
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.cache")
+public class CacheConfig {
+
+    /**
+     * 分区热榜的缓存时长，超过80%后由下一次读取在后台刷新
+     */
+    private Duration trendTtl = Duration.ofMinutes(30L);
+
+    /**
+     * 分区热榜加载失败后，在该时长内不再重新加载
+     */
+    private Duration trendFailureBackoff = Duration.ofMinutes(1L);
+
+    /**
+     * 视频详情缓存的最大数量，超出后淘汰最久未使用的视频
+     */
+    private int videoCapacity = 5000;
+
+    /**
+     * 视频详情的缓存时长
+     */
+    private Duration videoTtl = Duration.ofHours(6L);
+
+    /**
+     * 充电、送礼对象空间信息的缓存时长
+     */
+    private Duration targetTtl = Duration.ofHours(12L);
+
+    /**
+     * 用户直播间号的缓存时长
+     */
+    private Duration roomIdTtl = Duration.ofDays(7L);
+
+    /**
+     * 用户不存在或没有直播间时的缓存时长
+     */
+    private Duration negativeTtl = Duration.ofHours(1L);
+}
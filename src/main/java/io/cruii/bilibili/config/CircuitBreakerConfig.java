@@ -0,0 +1,36 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * B站API与代理的熔断配置
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.circuit-breaker")
+public class CircuitBreakerConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * 连续失败达到该次数后熔断
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * 熔断持续时长，到期后放行少量探测请求
+     */
+    private Duration openDuration = Duration.ofSeconds(30L);
+
+    /**
+     * 半开状态下同时放行的探测请求数
+     */
+    private int halfOpenProbes = 1;
+}
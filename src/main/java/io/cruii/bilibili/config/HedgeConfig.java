@@ -0,0 +1,46 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * GET请求的对冲配置
+ *
+ * @author cruii
+ * Created on 2022/01/23
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.hedge")
+public class HedgeConfig {
+
+    private boolean enabled = false;
+
+    /**
+     * 请求耗时超过该接口此分位的耗时仍未完成时发送对冲请求
+     */
+    private double percentile = 0.95D;
+
+    /**
+     * 发送对冲请求前的最短等待时长
+     */
+    private Duration minDelay = Duration.ofMillis(300L);
+
+    /**
+     * 每个接口保留的最近耗时样本数
+     */
+    private int window = 200;
+
+    /**
+     * 接口的耗时样本达到该数量后才会对冲
+     */
+    private int minSamples = 50;
+
+    /**
+     * 对冲请求数占全部GET请求数的比例上限，避免接口整体变慢时请求量翻倍
+     */
+    private double maxRatio = 0.1D;
+}
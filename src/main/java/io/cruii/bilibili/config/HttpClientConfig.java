@@ -0,0 +1,44 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * B站API连接池配置
+ *
+ * @author cruii
+ * Created on 2022/01/18
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.http")
+public class HttpClientConfig {
+
+    /**
+     * 连接池的最大连接数
+     */
+    private int maxTotal = 200;
+
+    /**
+     * 每个路由（目标主机与代理的组合）的最大连接数
+     */
+    private int maxPerRoute = 20;
+
+    /**
+     * 空闲超过该时长的连接会被关闭
+     */
+    private Duration idleTimeout = Duration.ofSeconds(30L);
+
+    /**
+     * 处理网络IO的线程数，所有请求共用，默认与CPU核数一致
+     */
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 连接的最长存活时间，到期后不再复用
+     */
+    private Duration timeToLive = Duration.ofMinutes(5L);
+}
@@ -0,0 +1,79 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 代理池配置
+ *
+ * @author cruii
+ * Created on 2022/01/24
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.proxy")
+public class ProxyPoolConfig {
+
+    /**
+     * 代理服务商的API接口，为空时读取proxy.properties，均为空时直连
+     */
+    private String api;
+
+    /**
+     * 可用代理少于该数量时在后台补充
+     */
+    private int minReady = 10;
+
+    /**
+     * 后台检查代理池的间隔
+     */
+    private Duration refreshInterval = Duration.ofSeconds(10L);
+
+    /**
+     * 两次从代理服务商获取代理的最小间隔，代理池不足或获取失败时同样生效
+     */
+    private Duration minFetchInterval = Duration.ofSeconds(5L);
+
+    /**
+     * 代理获取后的有效时长，超过后不再分配
+     */
+    private Duration maxAge = Duration.ofMinutes(5L);
+
+    /**
+     * 检查代理可用性时访问的地址，使用HEAD请求，不读取响应内容
+     */
+    private String checkUrl = "https://www.bilibili.com";
+
+    /**
+     * 检查代理可用性的超时时长，连接与读取分别计算
+     */
+    private Duration checkTimeout = Duration.ofSeconds(3L);
+
+    /**
+     * 同时检查的代理数上限
+     */
+    private int checkConcurrency = 20;
+
+    /**
+     * 每个代理保留的最近耗时样本数
+     */
+    private int window = 50;
+
+    /**
+     * 代理的请求数达到该数量后才会按成功率淘汰
+     */
+    private int minSamples = 10;
+
+    /**
+     * 成功率低于该值的代理从代理池中移除
+     */
+    private double minSuccessRate = 0.5D;
+
+    /**
+     * 账号当前代理连续失败或被限流达到该次数后切换代理
+     */
+    private int rotateAfter = 3;
+}
@@ -0,0 +1,73 @@
+package io.cruii.bilibili.config;
+
+import io.cruii.bilibili.util.BilibiliApiUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * B站API限流配置，所有账号共享
+ *
+ * @author cruii
+ * Created on 2022/01/19
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.rate-limit")
+public class RateLimitConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * 每个接口默认的每秒请求数
+     */
+    private double defaultRate = 20D;
+
+    /**
+     * 指定接口的每秒请求数，key为 {@link io.cruii.bilibili.constant.BilibiliAPI} 中的常量名，如 DONATE_COIN
+     */
+    private Map<String, Double> rates = new HashMap<>();
+
+    /**
+     * 允许的突发请求数
+     */
+    private int burst = 10;
+
+    /**
+     * 是否按代理分别限流，开启后每个代理的同一接口单独计算速率
+     */
+    private boolean perProxy = false;
+
+    /**
+     * 被限流后速率降低的比例
+     */
+    private double decreaseFactor = 0.5D;
+
+    /**
+     * 每次请求成功后恢复的速率，占配置速率的比例
+     */
+    private double increaseRatio = 0.02D;
+
+    /**
+     * 自动降低时速率的下限，占配置速率的比例
+     */
+    private double minRatio = 0.05D;
+
+    /**
+     * 获取接口配置的每秒请求数
+     *
+     * @param endpoint 接口名
+     * @return 每秒请求数
+     */
+    public double getRate(String endpoint) {
+        String normalized = BilibiliApiUtil.normalize(endpoint);
+        return rates.entrySet().stream()
+                .filter(entry -> BilibiliApiUtil.normalize(entry.getKey()).equals(normalized))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(defaultRate);
+    }
+}
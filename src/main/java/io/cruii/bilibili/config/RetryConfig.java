@@ -0,0 +1,144 @@
+package io.cruii.bilibili.config;
+
+import io.cruii.bilibili.util.BilibiliApiUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * B站API调用的重试配置
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.retry")
+public class RetryConfig {
+
+    /**
+     * 单次调用的最大尝试次数，包含第一次请求
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 第一次重试前的等待时长
+     */
+    private Duration initialBackoff = Duration.ofMillis(500L);
+
+    /**
+     * 重试等待时长的上限
+     */
+    private Duration maxBackoff = Duration.ofSeconds(10L);
+
+    /**
+     * 每次重试后等待时长的增长倍数
+     */
+    private double multiplier = 2D;
+
+    /**
+     * 等待时长随机浮动的比例，避免大量账号同时重试
+     */
+    private double jitter = 0.5D;
+
+    /**
+     * 单次调用从第一次请求开始的总时长上限，超过后不再重试
+     */
+    private Duration deadline = Duration.ofSeconds(30L);
+
+    /**
+     * 可以重试的响应码，包括限流与服务端临时错误
+     */
+    private List<Integer> retriableCodes = new ArrayList<>(Arrays.asList(-412, -500, -503, -504, -509, -799));
+
+    /**
+     * 请求未被处理就被拒绝的响应码，非幂等接口只在这些情况下重试
+     */
+    private List<Integer> rejectedCodes = new ArrayList<>(Arrays.asList(-412, -509, -799));
+
+    /**
+     * 非幂等接口，key为 {@link io.cruii.bilibili.constant.BilibiliAPI} 中的常量名。
+     * 这些接口在请求可能已被处理时（如读取超时、服务端错误）不会重试，避免重复投币、充电
+     */
+    private Set<String> nonIdempotent = new LinkedHashSet<>(Arrays.asList(
+            "DONATE_COIN", "CHARGE", "SEND_GIFT", "SILVER_2_COIN", "COMMIT_CHARGE_COMMENT"));
+
+    /**
+     * 只读接口，key为 {@link io.cruii.bilibili.constant.BilibiliAPI} 中的常量名。
+     * 只有幂等且只读的接口才会发送对冲请求，直播签到等会修改状态的GET接口不在此列
+     */
+    private Set<String> readOnly = new LinkedHashSet<>(Arrays.asList(
+            "GET_USER_INFO_NAV", "GET_USER_SPACE_INFO", "GET_COIN_CHANGE_LOG", "GET_EXP_REWARD_STATUS",
+            "GET_FOLLOWED_UP_POST_VIDEO", "GET_TREND_VIDEO", "GET_VIDEO_DETAILS", "GET_COIN_EXP_TODAY",
+            "GET_COIN", "CHECK_DONATE_COIN", "BILI_LIVE_WALLET", "LIST_GIFTS", "GET_LIVE_ROOM_INFO",
+            "GET_CHARGE_INFO", "GET_MEDAL_WALL"));
+
+    /**
+     * 指定接口的重试规则，未配置的项使用全局配置
+     */
+    private Map<String, Rule> rules = new HashMap<>();
+
+    /**
+     * 获取接口实际生效的重试规则
+     *
+     * @param endpoint 接口名，未知接口为null
+     * @return 重试规则
+     */
+    public Rule getRule(String endpoint) {
+        Rule rule = Optional.ofNullable(endpoint)
+                .map(BilibiliApiUtil::normalize)
+                .flatMap(normalized -> rules.entrySet().stream()
+                        .filter(entry -> BilibiliApiUtil.normalize(entry.getKey()).equals(normalized))
+                        .map(Map.Entry::getValue)
+                        .findFirst())
+                .orElseGet(Rule::new);
+
+        boolean idempotent = rule.getIdempotent() != null ? rule.getIdempotent() :
+                endpoint == null || nonIdempotent.stream()
+                        .noneMatch(name -> BilibiliApiUtil.normalize(name).equals(BilibiliApiUtil.normalize(endpoint)));
+        boolean readOnlyEndpoint = rule.getReadOnly() != null ? rule.getReadOnly() :
+                endpoint != null && readOnly.stream()
+                        .anyMatch(name -> BilibiliApiUtil.normalize(name).equals(BilibiliApiUtil.normalize(endpoint)));
+        Rule effective = new Rule();
+        effective.setIdempotent(idempotent);
+        effective.setReadOnly(readOnlyEndpoint);
+        effective.setMaxAttempts(rule.getMaxAttempts() != null ? rule.getMaxAttempts() : maxAttempts);
+        effective.setRetriableCodes(rule.getRetriableCodes() != null ? rule.getRetriableCodes() :
+                idempotent ? retriableCodes : rejectedCodes);
+        return effective;
+    }
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 最大尝试次数
+         */
+        private Integer maxAttempts;
+
+        /**
+         * 可以重试的响应码，非幂等接口默认使用 {@link RetryConfig#getRejectedCodes()}
+         */
+        private List<Integer> retriableCodes;
+
+        /**
+         * 是否幂等，默认根据 {@link RetryConfig#getNonIdempotent()} 判断
+         */
+        private Boolean idempotent;
+
+        /**
+         * 是否只读，默认根据 {@link RetryConfig#getReadOnly()} 判断
+         */
+        private Boolean readOnly;
+    }
+}
@@ -0,0 +1,49 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对象存储上传配置
+ *
+ * @author cruii
+ * Created on 2022/01/26
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.storage")
+public class StorageConfig {
+
+    /**
+     * 存储类型，cos或local，cos未配置密钥时不上传
+     */
+    private String type = "cos";
+
+    /**
+     * local类型的保存目录
+     */
+    private String localDir = "storage";
+
+    /**
+     * 上传线程数
+     */
+    private int workers = 2;
+
+    /**
+     * COS客户端的最大连接数
+     */
+    private int maxConnections = 8;
+
+    /**
+     * 等待上传的对象数上限
+     */
+    private int queueCapacity = 200;
+
+    /**
+     * 队列已满时提交方的最长等待时长，超时后放弃本次上传
+     */
+    private Duration offerTimeout = Duration.ofSeconds(5L);
+}
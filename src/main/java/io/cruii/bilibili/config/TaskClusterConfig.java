@@ -0,0 +1,45 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * 多节点部署配置
+ *
+ * @author cruii
+ * Created on 2022/01/17
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "task.cluster")
+public class TaskClusterConfig {
+
+    /**
+     * 是否启用多节点模式，启用后各节点通过数据库租约领取账号
+     */
+    private boolean enabled = false;
+
+    /**
+     * 节点标识，默认为 pid@hostname
+     */
+    private String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    /**
+     * 租约时长，节点宕机后其他节点需等待租约过期才能接管
+     */
+    private Duration leaseDuration = Duration.ofMinutes(2L);
+
+    /**
+     * 领取账号的间隔
+     */
+    private Duration pollInterval = Duration.ofSeconds(5L);
+
+    /**
+     * 每次最多领取的账号数
+     */
+    private int batchSize = 20;
+}
@@ -0,0 +1,71 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 账号任务流水线配置
+ *
+ * @author cruii
+ * Created on 2022/01/06
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "task.pipeline")
+public class TaskPipelineConfig {
+
+    /**
+     * 同时处于执行中的账号数上限
+     */
+    private int maxInFlight = 200;
+
+    /**
+     * 执行任务的工作线程数
+     */
+    private int workerThreads = 10;
+
+    /**
+     * 单个账号同时执行的任务数上限，为 1 时所有任务按顺序执行
+     */
+    private int accountParallelism = 3;
+
+    /**
+     * 同一账号两个任务之间的默认间隔
+     */
+    private Duration taskInterval = Duration.ofSeconds(3L);
+
+    /**
+     * 指定任务完成后的间隔，key为任务类名，如 DonateCoinTask
+     */
+    private Map<String, Duration> taskIntervals = new HashMap<>();
+
+    /**
+     * 账号每日最多执行的次数，执行异常的账号在次数内会重新放入任务队列
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 执行异常的账号重新放入任务队列前的等待时长
+     */
+    private Duration retryDelay = Duration.ofMinutes(1L);
+
+    /**
+     * 单个账号一次执行的总时长上限，超过后不再发起新的请求，并按执行失败处理
+     */
+    private Duration accountDeadline = Duration.ofMinutes(30L);
+
+    /**
+     * 获取任务完成后需要等待的间隔
+     *
+     * @param taskName 任务类名
+     * @return 间隔时长
+     */
+    public Duration getTaskInterval(String taskName) {
+        return taskIntervals.getOrDefault(taskName, taskInterval);
+    }
+}
@@ -0,0 +1,41 @@
+package io.cruii.bilibili.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 每日任务的投放方式配置
+ *
+ * @author cruii
+ * Created on 2022/01/12
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "task.schedule")
+public class TaskScheduleConfig {
+
+    /**
+     * 投放方式
+     */
+    private Mode mode = Mode.BURST;
+
+    /**
+     * SPREAD 模式下的投放时间窗口，从每日cron触发时开始计算，需小于一天
+     */
+    private Duration window = Duration.ofHours(6L);
+
+    public enum Mode {
+        /**
+         * cron触发时一次性放入所有账号
+         */
+        BURST,
+
+        /**
+         * 每个账号根据uid计算出固定的偏移量，在时间窗口内逐个放入
+         */
+        SPREAD
+    }
+}
@@ -0,0 +1,77 @@
+package io.cruii.bilibili.config;
+
+import io.cruii.bilibili.util.BilibiliApiUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * B站API的请求超时配置
+ *
+ * @author cruii
+ * Created on 2022/01/23
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "bilibili.timeout")
+public class TimeoutConfig {
+
+    /**
+     * 建立连接与从连接池获取连接的超时时长
+     */
+    private Duration connect = Duration.ofSeconds(5L);
+
+    /**
+     * 等待响应数据的超时时长
+     */
+    private Duration read = Duration.ofSeconds(10L);
+
+    /**
+     * 指定接口的超时时长，key为 {@link io.cruii.bilibili.constant.BilibiliAPI} 中的常量名，未配置的项使用全局配置
+     */
+    private Map<String, Endpoint> endpoints = new HashMap<>();
+
+    /**
+     * 获取接口的连接超时时长
+     *
+     * @param endpoint 接口名，未知接口为null
+     * @return 超时时长
+     */
+    public Duration getConnect(String endpoint) {
+        return endpointOf(endpoint).map(Endpoint::getConnect).orElse(connect);
+    }
+
+    /**
+     * 获取接口的读取超时时长
+     *
+     * @param endpoint 接口名，未知接口为null
+     * @return 超时时长
+     */
+    public Duration getRead(String endpoint) {
+        return endpointOf(endpoint).map(Endpoint::getRead).orElse(read);
+    }
+
+    private Optional<Endpoint> endpointOf(String endpoint) {
+        if (endpoint == null) {
+            return Optional.empty();
+        }
+        String normalized = BilibiliApiUtil.normalize(endpoint);
+        return endpoints.entrySet().stream()
+                .filter(entry -> BilibiliApiUtil.normalize(entry.getKey()).equals(normalized))
+                .map(Map.Entry::getValue)
+                .findFirst();
+    }
+
+    @Data
+    public static class Endpoint {
+
+        private Duration connect;
+
+        private Duration read;
+    }
+}
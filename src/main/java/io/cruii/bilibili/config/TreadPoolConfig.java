@@ -3,6 +3,7 @@ package io.cruii.bilibili.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -13,21 +14,34 @@ import java.util.concurrent.ThreadPoolExecutor;
 @Configuration
 public class TreadPoolConfig {
     @Bean
-    public ThreadPoolTaskExecutor bilibiliExecutor() {
+    public ThreadPoolTaskExecutor bilibiliExecutor(TaskPipelineConfig pipelineConfig) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         // 核心线程数：线程池创建时候初始化的线程数
-        executor.setCorePoolSize(10);
+        executor.setCorePoolSize(pipelineConfig.getWorkerThreads());
         // 最大线程数：线程池最大的线程数，只有在缓冲队列满了之后才会申请超过核心线程数的线程
-        executor.setMaxPoolSize(20);
-        // 缓冲队列：用来缓冲执行任务的队列
-        executor.setQueueCapacity(50);
+        executor.setMaxPoolSize(pipelineConfig.getWorkerThreads() * 2);
+        // 缓冲队列：每个执行中的账号同一时刻最多有 accountParallelism 个待执行的步骤
+        executor.setQueueCapacity(pipelineConfig.getMaxInFlight() * Math.max(1, pipelineConfig.getAccountParallelism()));
         // 允许线程的空闲时间60秒：当超过了核心线程之外的线程在空闲时间到达之后会被销毁
         executor.setKeepAliveSeconds(30);
         // 线程池名的前缀：设置好了之后可以方便我们定位处理任务所在的线程池
         executor.setThreadNamePrefix("bilibili-");
-        // 缓冲队列满了之后的拒绝策略：由调用线程处理（一般是主线程）
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 缓冲队列满了之后的拒绝策略：抛出异常，由该步骤或账号以失败结束。
+        // 提交方是调度线程、计时线程与HTTP回调线程，不能由调用线程执行阻塞的任务
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 用于任务间隔计时的调度器，只负责到点唤醒后续步骤，不执行任务本身
+     */
+    @Bean
+    public ThreadPoolTaskScheduler pacingScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("pacing-");
+        scheduler.initialize();
+        return scheduler;
+    }
 }
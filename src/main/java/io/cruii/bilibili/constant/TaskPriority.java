@@ -0,0 +1,24 @@
+package io.cruii.bilibili.constant;
+
+/**
+ * 任务队列优先级，按声明顺序从高到低
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+public enum TaskPriority {
+    /**
+     * 新建任务或手动触发
+     */
+    HIGH,
+
+    /**
+     * 失败重试
+     */
+    RETRY,
+
+    /**
+     * 每日定时任务
+     */
+    NORMAL
+}
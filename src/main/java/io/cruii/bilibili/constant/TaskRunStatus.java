@@ -0,0 +1,29 @@
+package io.cruii.bilibili.constant;
+
+/**
+ * 账号每日任务的执行状态
+ *
+ * @author cruii
+ * Created on 2022/01/14
+ */
+public enum TaskRunStatus {
+    /**
+     * 等待执行
+     */
+    PENDING,
+
+    /**
+     * 执行中
+     */
+    RUNNING,
+
+    /**
+     * 执行完成
+     */
+    DONE,
+
+    /**
+     * 执行失败
+     */
+    FAILED
+}
@@ -0,0 +1,139 @@
+package io.cruii.bilibili.controller;
+
+import io.cruii.bilibili.component.ApiCircuitBreaker;
+import io.cruii.bilibili.component.ApiRateLimiter;
+import io.cruii.bilibili.component.AvatarSync;
+import io.cruii.bilibili.component.BilibiliHttpClient;
+import io.cruii.bilibili.component.ObjectUploader;
+import io.cruii.bilibili.component.ProxyPool;
+import io.cruii.bilibili.component.RequestHedger;
+import io.cruii.bilibili.component.RetryPolicy;
+import io.cruii.bilibili.component.TaskManager;
+import io.cruii.bilibili.component.TaskPipeline;
+import io.cruii.bilibili.component.TargetInfoCache;
+import io.cruii.bilibili.component.TrendVideoCache;
+import io.cruii.bilibili.component.VideoDetailsCache;
+import io.cruii.bilibili.constant.TaskPriority;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行状态监控
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+@RestController
+@RequestMapping("monitor")
+public class MonitorController {
+
+    private final TaskManager taskManager;
+    private final TaskPipeline taskPipeline;
+    private final BilibiliHttpClient bilibiliHttpClient;
+    private final ApiRateLimiter apiRateLimiter;
+    private final ApiCircuitBreaker apiCircuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final RequestHedger requestHedger;
+    private final ProxyPool proxyPool;
+    private final TrendVideoCache trendVideoCache;
+    private final VideoDetailsCache videoDetailsCache;
+    private final TargetInfoCache targetInfoCache;
+    private final AvatarSync avatarSync;
+    private final ObjectUploader objectUploader;
+
+    public MonitorController(TaskManager taskManager,
+                             TaskPipeline taskPipeline,
+                             BilibiliHttpClient bilibiliHttpClient,
+                             ApiRateLimiter apiRateLimiter,
+                             ApiCircuitBreaker apiCircuitBreaker,
+                             RetryPolicy retryPolicy,
+                             RequestHedger requestHedger,
+                             ProxyPool proxyPool,
+                             TrendVideoCache trendVideoCache,
+                             VideoDetailsCache videoDetailsCache,
+                             TargetInfoCache targetInfoCache,
+                             AvatarSync avatarSync,
+                             ObjectUploader objectUploader) {
+        this.taskManager = taskManager;
+        this.taskPipeline = taskPipeline;
+        this.bilibiliHttpClient = bilibiliHttpClient;
+        this.apiRateLimiter = apiRateLimiter;
+        this.apiCircuitBreaker = apiCircuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.requestHedger = requestHedger;
+        this.proxyPool = proxyPool;
+        this.trendVideoCache = trendVideoCache;
+        this.videoDetailsCache = videoDetailsCache;
+        this.targetInfoCache = targetInfoCache;
+        this.avatarSync = avatarSync;
+        this.objectUploader = objectUploader;
+    }
+
+    @GetMapping("queue")
+    public Map<String, Object> queue() {
+        Map<TaskPriority, Integer> depth = taskManager.depth();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("depth", depth);
+        result.put("total", depth.values().stream().mapToInt(Integer::intValue).sum());
+        result.put("inFlight", taskPipeline.getInFlight());
+        return result;
+    }
+
+    @GetMapping("pipeline")
+    public Map<String, Object> pipeline() {
+        return taskPipeline.stats();
+    }
+
+    @GetMapping("http")
+    public Map<String, Object> http() {
+        return bilibiliHttpClient.stats();
+    }
+
+    @GetMapping("rate-limit")
+    public Map<String, Object> rateLimit() {
+        return apiRateLimiter.stats();
+    }
+
+    @GetMapping("circuit-breaker")
+    public Map<String, Object> circuitBreaker() {
+        return apiCircuitBreaker.stats();
+    }
+
+    @GetMapping("retry")
+    public Map<String, Object> retry() {
+        return retryPolicy.stats();
+    }
+
+    @GetMapping("hedge")
+    public Map<String, Object> hedge() {
+        return requestHedger.stats();
+    }
+
+    @GetMapping("proxy")
+    public Map<String, Object> proxy() {
+        return proxyPool.stats();
+    }
+
+    @GetMapping("cache")
+    public Map<String, Object> cache() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("trend", trendVideoCache.stats());
+        result.put("video", videoDetailsCache.stats());
+        result.put("target", targetInfoCache.stats());
+        return result;
+    }
+
+    @GetMapping("avatar")
+    public Map<String, Object> avatar() {
+        return avatarSync.stats();
+    }
+
+    @GetMapping("storage")
+    public Map<String, Object> storage() {
+        return objectUploader.stats();
+    }
+}
@@ -0,0 +1,69 @@
+package io.cruii.bilibili.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.cruii.bilibili.constant.TaskRunStatus;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 账号每日任务执行记录
+ *
+ * @author cruii
+ * Created on 2022/01/14
+ */
+@Data
+@TableName("task_run")
+public class TaskRun implements Serializable {
+
+    private static final long serialVersionUID = -4364283012856375613L;
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * B站uid
+     */
+    private String dedeuserid;
+
+    /**
+     * 执行日期
+     */
+    private LocalDate runDate;
+
+    /**
+     * 执行状态
+     */
+    private TaskRunStatus status;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 放入任务队列的时间
+     */
+    private LocalDateTime releaseTime;
+
+    /**
+     * 持有租约的节点
+     */
+    private String owner;
+
+    /**
+     * 租约到期时间，过期后其他节点可以接管
+     */
+    private LocalDateTime leaseUntil;
+
+    /**
+     * 今日已完成的任务，每个任务对应一位，见 {@link io.cruii.bilibili.component.TaskLedger}
+     */
+    private Long completedTasks;
+
+    private LocalDateTime updateTime;
+}
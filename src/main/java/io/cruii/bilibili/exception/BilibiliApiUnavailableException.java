@@ -0,0 +1,13 @@
+package io.cruii.bilibili.exception;
+
+/**
+ * B站接口或代理不可用，调用已被熔断或重试次数已用尽
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+public class BilibiliApiUnavailableException extends BaseException {
+    public BilibiliApiUnavailableException(String target, String reason) {
+        super(ErrorCode.API_UNAVAILABLE, "B站接口[" + target + "]暂不可用: " + reason);
+    }
+}
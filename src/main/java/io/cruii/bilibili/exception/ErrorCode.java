@@ -10,7 +10,8 @@ import org.springframework.http.HttpStatus;
 @Getter
 public enum ErrorCode {
     COOKIE_EXPIRED(101, HttpStatus.UNAUTHORIZED, "\uD83D\uDE35 Oops! 账号Cookie已失效"),
-    B_USER_NOT_FOUND(102, HttpStatus.NOT_FOUND, "\uD83D\uDE35\u200D\uD83D\uDCAB 用户未找到");
+    B_USER_NOT_FOUND(102, HttpStatus.NOT_FOUND, "\uD83D\uDE35\u200D\uD83D\uDCAB 用户未找到"),
+    API_UNAVAILABLE(103, HttpStatus.SERVICE_UNAVAILABLE, "\uD83D\uDE35 B站接口暂不可用");
 
     ErrorCode(int code, HttpStatus status, String message) {
         this.code = code;
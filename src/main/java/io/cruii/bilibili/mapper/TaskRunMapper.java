@@ -0,0 +1,10 @@
+package io.cruii.bilibili.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import io.cruii.bilibili.entity.TaskRun;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface TaskRunMapper extends BaseMapper<TaskRun> {
+
+}
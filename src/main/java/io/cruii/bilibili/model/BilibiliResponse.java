@@ -0,0 +1,24 @@
+package io.cruii.bilibili.model;
+
+import lombok.Data;
+
+/**
+ * B站API的通用响应结构
+ *
+ * @param <T> data部分的类型
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class BilibiliResponse<T> {
+
+    private Integer code;
+
+    private String message;
+
+    private T data;
+
+    public boolean isSuccess() {
+        return Integer.valueOf(0).equals(code);
+    }
+}
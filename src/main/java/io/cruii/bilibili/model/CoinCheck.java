@@ -0,0 +1,18 @@
+package io.cruii.bilibili.model;
+
+import lombok.Data;
+
+/**
+ * 视频投币状态
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class CoinCheck {
+
+    /**
+     * 已投币数，未投币时为0
+     */
+    private Integer multiply;
+}
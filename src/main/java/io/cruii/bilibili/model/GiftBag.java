@@ -0,0 +1,40 @@
+package io.cruii.bilibili.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 直播背包
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class GiftBag {
+
+    /**
+     * 背包为空时为null
+     */
+    private List<Gift> list;
+
+    @Data
+    @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+    public static class Gift {
+
+        private String bagId;
+
+        private String giftId;
+
+        private String giftName;
+
+        private Integer giftNum;
+
+        /**
+         * 过期时间，秒级时间戳，永久有效的礼物为0
+         */
+        private Long expireAt;
+    }
+}
@@ -0,0 +1,20 @@
+package io.cruii.bilibili.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * 用户的直播间信息
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class LiveRoomInfo {
+
+    /**
+     * 直播间号，用户没有直播间时为0
+     */
+    @JsonProperty("roomid")
+    private Long roomId;
+}
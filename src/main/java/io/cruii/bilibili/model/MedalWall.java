@@ -0,0 +1,41 @@
+package io.cruii.bilibili.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 粉丝勋章墙
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class MedalWall {
+
+    private List<Medal> list;
+
+    @Data
+    @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+    public static class Medal {
+
+        private MedalInfo medalInfo;
+    }
+
+    @Data
+    @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+    public static class MedalInfo {
+
+        private String medalName;
+
+        private Integer level;
+
+        private Integer medalColorStart;
+
+        private Integer medalColorEnd;
+
+        private Integer medalColorBorder;
+    }
+}
@@ -0,0 +1,57 @@
+package io.cruii.bilibili.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 导航栏用户信息
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class NavInfo {
+
+    @JsonProperty("isLogin")
+    private Boolean isLogin;
+
+    private String face;
+
+    private String uname;
+
+    /**
+     * 硬币数
+     */
+    private BigDecimal money;
+
+    private Vip vip;
+
+    private LevelInfo levelInfo;
+
+    @Data
+    public static class Vip {
+
+        private Integer type;
+
+        private Integer status;
+    }
+
+    @Data
+    @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+    public static class LevelInfo {
+
+        private Integer currentLevel;
+
+        private Integer currentExp;
+
+        /**
+         * 6级时为"--"
+         */
+        private String nextExp;
+    }
+}
@@ -0,0 +1,19 @@
+package io.cruii.bilibili.model;
+
+import lombok.Data;
+
+/**
+ * 用户空间信息
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class SpaceInfo {
+
+    private Long mid;
+
+    private String name;
+
+    private Integer level;
+}
@@ -0,0 +1,15 @@
+package io.cruii.bilibili.model;
+
+import lombok.Data;
+
+/**
+ * 分区热榜视频
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class TrendVideo {
+
+    private String bvid;
+}
@@ -0,0 +1,27 @@
+package io.cruii.bilibili.model;
+
+import lombok.Data;
+
+/**
+ * 视频详情
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@Data
+public class VideoDetails {
+
+    private String bvid;
+
+    private String title;
+
+    private Owner owner;
+
+    @Data
+    public static class Owner {
+
+        private Long mid;
+
+        private String name;
+    }
+}
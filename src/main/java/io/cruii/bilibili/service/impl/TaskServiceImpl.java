@@ -3,7 +3,9 @@ package io.cruii.bilibili.service.impl;
 import cn.hutool.json.JSONObject;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import io.cruii.bilibili.component.BilibiliDelegate;
+import io.cruii.bilibili.component.TaskLedger;
 import io.cruii.bilibili.component.TaskManager;
+import io.cruii.bilibili.constant.TaskPriority;
 import io.cruii.bilibili.dto.TaskConfigDTO;
 import io.cruii.bilibili.entity.BilibiliUser;
 import io.cruii.bilibili.entity.TaskConfig;
@@ -31,14 +33,18 @@ public class TaskServiceImpl implements TaskService {
     private final MapperFactory mapperFactory;
 
     private final TaskManager taskManager;
+
+    private final TaskLedger taskLedger;
     public TaskServiceImpl(TaskConfigMapper taskConfigMapper,
                            BilibiliUserMapper bilibiliUserMapper,
                            MapperFactory mapperFactory,
-                           TaskManager taskManager) {
+                           TaskManager taskManager,
+                           TaskLedger taskLedger) {
         this.taskConfigMapper = taskConfigMapper;
         this.bilibiliUserMapper = bilibiliUserMapper;
         this.mapperFactory = mapperFactory;
         this.taskManager = taskManager;
+        this.taskLedger = taskLedger;
     }
 
     @Override
@@ -52,6 +58,9 @@ public class TaskServiceImpl implements TaskService {
             // 用户Cookie有效
             // 持久化任务配置信息
             TaskConfig existConfig = taskConfigMapper.selectOne(Wrappers.lambdaQuery(TaskConfig.class).eq(TaskConfig::getDedeuserid, user.getDedeuserid()));
+            boolean credentialsChanged = existConfig == null
+                    || !Objects.equals(existConfig.getSessdata(), config.getSessdata())
+                    || !Objects.equals(existConfig.getBiliJct(), config.getBiliJct());
             if (Objects.nonNull(existConfig)) {
                 config.setId(existConfig.getId());
                 taskConfigMapper.updateById(config);
@@ -68,8 +77,11 @@ public class TaskServiceImpl implements TaskService {
                 bilibiliUserMapper.updateById(user);
             }
 
-            // 初次执行任务
-            taskManager.put(config);
+            // 新账号或更换了Cookie时今日的台账不再可信；只修改任务配置时保留今日已完成的任务
+            if (credentialsChanged) {
+                taskLedger.reset(user.getDedeuserid());
+            }
+            taskManager.put(config, TaskPriority.HIGH);
             if (Boolean.TRUE.equals(config.getFollowDeveloper())) {
                 String devUid = "287969457";
                 JSONObject followResp = delegate.followUser(devUid);
@@ -0,0 +1,48 @@
+package io.cruii.bilibili.storage;
+
+import com.qcloud.cos.COSClient;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.auth.BasicCOSCredentials;
+import com.qcloud.cos.http.HttpProtocol;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.region.Region;
+import io.cruii.bilibili.config.TencentCloudConfig;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 腾讯云COS，使用同一个 {@link COSClient}，连接由客户端内部的连接池复用
+ *
+ * @author cruii
+ * Created on 2022/01/26
+ */
+public class CosObjectStorage implements ObjectStorage {
+    private final COSClient cosClient;
+    private final String bucketName;
+    private final String folder;
+
+    public CosObjectStorage(TencentCloudConfig tencentCloudConfig, int maxConnections) {
+        BasicCOSCredentials credentials = new BasicCOSCredentials(tencentCloudConfig.getSecretId(), tencentCloudConfig.getSecretKey());
+        ClientConfig clientConfig = new ClientConfig(new Region(tencentCloudConfig.getCosRegion()));
+        clientConfig.setHttpProtocol(HttpProtocol.https);
+        clientConfig.setMaxConnectionsCount(maxConnections);
+        this.cosClient = new COSClient(credentials, clientConfig);
+        this.bucketName = tencentCloudConfig.getBucketName();
+        this.folder = tencentCloudConfig.getFolder();
+    }
+
+    @Override
+    public void put(String key, File file) throws IOException {
+        try {
+            cosClient.putObject(new PutObjectRequest(bucketName, folder + "/" + key, file));
+        } catch (RuntimeException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        cosClient.shutdown();
+    }
+}
@@ -0,0 +1,40 @@
+package io.cruii.bilibili.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 本地目录，用于测试或未配置COS的部署
+ *
+ * @author cruii
+ * Created on 2022/01/26
+ */
+public class LocalObjectStorage implements ObjectStorage {
+    private final Path dir;
+
+    public LocalObjectStorage(String dir) {
+        this.dir = new File(dir).toPath();
+    }
+
+    @Override
+    public void put(String key, File file) throws IOException {
+        Path target = dir.resolve(key);
+        Files.createDirectories(target.getParent());
+        // 先复制到临时文件再重命名，读取方不会看到不完整的对象
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // 没有需要释放的资源
+    }
+}
@@ -0,0 +1,26 @@
+package io.cruii.bilibili.storage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 对象存储，实例在服务运行期间复用
+ *
+ * @author cruii
+ * Created on 2022/01/26
+ */
+public interface ObjectStorage {
+
+    /**
+     * 上传对象，同名对象直接覆盖
+     *
+     * @param key  对象名，不含存储桶目录
+     * @param file 对象内容
+     */
+    void put(String key, File file) throws IOException;
+
+    /**
+     * 释放连接等资源
+     */
+    void shutdown();
+}
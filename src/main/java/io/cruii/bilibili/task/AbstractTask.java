@@ -4,6 +4,9 @@ import io.cruii.bilibili.component.BilibiliDelegate;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author cruii
  * Created on 2021/9/15
@@ -20,18 +23,29 @@ public abstract class AbstractTask implements Task {
     @Getter
     private int attempts = 1;
 
+    @Getter
+    private boolean completed;
+
     AbstractTask(BilibiliDelegate delegate) {
         this.delegate = delegate;
     }
 
+    /**
+     * 标记今日的任务目标已达成，未启用或账号条件不满足等今日无需执行的情况同样标记
+     */
+    protected void markCompleted() {
+        this.completed = true;
+    }
+
     public void addAttempts() {
         this.attempts++;
     }
 
-    public void checkAttemptsAndChangeProxy() {
-        if (attempts % 3 == 0 && attempts <= 9) {
-            log.info("切换代理");
-            delegate.changeProxy();
-        }
+    /**
+     * 默认需要Cookie有效
+     */
+    @Override
+    public List<Class<? extends Task>> dependsOn() {
+        return Collections.singletonList(CheckCookieTask.class);
     }
 }
@@ -26,11 +26,11 @@ public class ChargeTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         if (Boolean.FALSE.equals(config.getAutoCharge())) {
             log.info("[{}]未启用自动充电功能 ❌", config.getDedeuserid());
+            markCompleted();
             return;
         }
 
@@ -39,6 +39,7 @@ public class ChargeTask extends AbstractTask {
         Integer vipType = user.getVipType();
         if (vipType == 0 || vipType == 1) {
             log.info("账号非年费大会员，停止执行充电任务 ❌");
+            markCompleted();
             return;
         }
 
@@ -53,6 +54,7 @@ public class ChargeTask extends AbstractTask {
 
         if (couponBalance < 2) {
             log.info("B币券余额不足，停止执行充电任务 ❌");
+            markCompleted();
             return;
         }
         String targetId = config.getAutoChargeTarget();
@@ -60,7 +62,7 @@ public class ChargeTask extends AbstractTask {
             targetId = config.getDedeuserid();
         }
 
-        BilibiliUser targetUser = delegate.getUser(targetId);
+        BilibiliUser targetUser = delegate.getTargetUser(targetId);
         if (targetUser == null) {
             log.info("充电对象不存在，将为作者[{}]进行充电", AUTHOR_MID);
             targetId = AUTHOR_MID;
@@ -71,6 +73,7 @@ public class ChargeTask extends AbstractTask {
             Integer status = chargeResp.getByPath("data.status", Integer.class);
             if (status == 4) {
                 log.info("充电成功，本次消费[{}]个B币券 ✔️", couponBalance);
+                markCompleted();
                 String orderNo = chargeResp.getByPath("data.order_no", String.class);
                 JSONObject commentResp = delegate.doChargeComment(orderNo);
                 if (commentResp.getInt(CODE) != 0) {
@@ -1,11 +1,15 @@
 package io.cruii.bilibili.task;
 
-import cn.hutool.json.JSONObject;
 import io.cruii.bilibili.component.BilibiliDelegate;
 import io.cruii.bilibili.entity.TaskConfig;
 import io.cruii.bilibili.exception.BilibiliCookieExpiredException;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.NavInfo;
 import lombok.extern.log4j.Log4j2;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 登录校验
  *
@@ -24,12 +28,11 @@ public class CheckCookieTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
-        JSONObject resp = delegate.checkCookie();
-        if (resp.getInt("code") == 0 &&
-                Boolean.TRUE.equals(resp.getByPath("data.isLogin"))) {
+        BilibiliResponse<NavInfo> resp = delegate.checkCookie();
+        if (resp.isSuccess() &&
+                Boolean.TRUE.equals(resp.getData().getIsLogin())) {
             log.info("账号[{}]登陆成功 ✔️", config.getDedeuserid());
         } else {
             log.error("账号[{}]登录失败，请更新Cookie ❌", config.getDedeuserid());
@@ -41,4 +44,9 @@ public class CheckCookieTask extends AbstractTask {
     public String getName() {
         return "Cookie有效性验证";
     }
+
+    @Override
+    public List<Class<? extends Task>> dependsOn() {
+        return Collections.emptyList();
+    }
 }
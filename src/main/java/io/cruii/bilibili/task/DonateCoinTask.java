@@ -5,11 +5,17 @@ import io.cruii.bilibili.component.BilibiliDelegate;
 import io.cruii.bilibili.context.BilibiliUserContext;
 import io.cruii.bilibili.entity.BilibiliUser;
 import io.cruii.bilibili.entity.TaskConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.CoinCheck;
 import lombok.extern.log4j.Log4j2;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -30,38 +36,41 @@ public class DonateCoinTask extends VideoTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         // 防止全部都投过币而导致任务卡死
         counter++;
         if (counter > 3) {
-            initFollowList();
-            initTrend();
+            initVideos();
             counter = 0;
         }
 
         BilibiliUser user = BilibiliUserContext.get();
         if (user.getLevel() >= 6) {
             log.info("账号已到达6级，取消执行投币任务");
+            markCompleted();
             return;
         }
 
         Integer donateCoins = config.getDonateCoins();
         log.info("配置投币数为：{}", donateCoins);
+        // 余额与今日投币经验互不依赖，同时请求
+        CompletableFuture<JSONObject> coinResp = delegate.getCoinAsync();
         int actual = calDiff();
         if (actual <= 0) {
             log.info("今日投币任务已完成 ✔️");
+            markCompleted();
             return;
         } else {
             log.info("距完成任务还需投币{}个", actual);
         }
         // 获取账户余额
-        int current = getCoin();
+        int current = getCoin(coinResp.join());
         log.info("当前账户余额：{}", current);
         if (current <= config.getReserveCoins() ||
                 actual > current) {
             log.info("当前余额不足或触发硬币保护阈值，取消执行投币任务。❌");
+            markCompleted();
             return;
         }
 
@@ -85,6 +94,7 @@ public class DonateCoinTask extends VideoTask {
             run();
         } else {
             log.info("今日投币任务已完成 ✔️");
+            markCompleted();
         }
     }
 
@@ -93,6 +103,14 @@ public class DonateCoinTask extends VideoTask {
         return "投币任务";
     }
 
+    /**
+     * 需要在银瓜子兑换硬币之后再计算余额
+     */
+    @Override
+    public List<Class<? extends Task>> dependsOn() {
+        return Arrays.asList(CheckCookieTask.class, Silver2CoinTask.class);
+    }
+
     /**
      * 计算还需多少硬币完成任务
      *
@@ -107,10 +125,10 @@ public class DonateCoinTask extends VideoTask {
     /**
      * 获取账号当前硬币余额
      *
+     * @param resp 余额查询结果
      * @return 硬币余额
      */
-    private int getCoin() {
-        JSONObject resp = delegate.getCoin();
+    private int getCoin(JSONObject resp) {
         if (resp.getInt(CODE) == 0) {
             BigDecimal coin = resp.getByPath("data.money", BigDecimal.class);
             if (coin == null) {
@@ -128,17 +146,24 @@ public class DonateCoinTask extends VideoTask {
      * @return 是否完成投币任务
      */
     private boolean doDonate(List<String> bvidList) {
-        bvidList.stream()
-                .filter(bvid -> {
-                    JSONObject resp = delegate.checkDonateCoin(bvid);
-                    if (resp.getByPath("data.multiply", Integer.class) > 0) {
-                        String videoTitle = getVideoTitle(bvid);
+        // 同时检查所有视频的投币状态，投币本身仍逐个执行
+        Map<String, CompletableFuture<BilibiliResponse<CoinCheck>>> checks = new LinkedHashMap<>();
+        bvidList.forEach(bvid -> checks.put(bvid, delegate.checkDonateCoinAsync(bvid)));
+        checks.entrySet().stream()
+                .filter(check -> {
+                    BilibiliResponse<CoinCheck> resp = check.getValue().join();
+                    if (!resp.isSuccess()) {
+                        log.error("获取视频[{}]的投币状态失败：{}", check.getKey(), resp.getMessage());
+                        return false;
+                    }
+                    if (resp.getData().getMultiply() > 0) {
+                        String videoTitle = getVideoTitle(check.getKey());
                         log.info("已为视频[{}]投过币，本次跳过", videoTitle);
-                        bvidList.remove(bvid);
                         return false;
                     }
                     return true;
                 })
+                .map(Map.Entry::getKey)
                 .forEach(bvid -> {
                     JSONObject resp = delegate.donateCoin(bvid, 1, 1);
                     String videoTitle = getVideoTitle(bvid);
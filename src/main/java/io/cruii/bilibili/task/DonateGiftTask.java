@@ -1,13 +1,14 @@
 package io.cruii.bilibili.task;
 
-import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import io.cruii.bilibili.component.BilibiliDelegate;
 import io.cruii.bilibili.entity.TaskConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.GiftBag;
 import lombok.extern.log4j.Log4j2;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -32,27 +33,30 @@ public class DonateGiftTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         if (!Boolean.TRUE.equals(config.getDonateGift())) {
             log.info("未启用赠送即将过期礼物 ❌");
+            markCompleted();
             return;
         }
 
+        // 背包与直播间信息互不依赖，同时请求
+        CompletableFuture<BilibiliResponse<GiftBag>> giftsResp = delegate.listGiftsAsync();
         // 初始化主播id和直播间id
         init();
 
-        JSONObject resp = delegate.listGifts();
-        if (resp.getInt(CODE) == 0) {
-            String gifts = resp.getByPath("data.list", String.class);
+        BilibiliResponse<GiftBag> resp = giftsResp.join();
+        if (resp.isSuccess()) {
+            List<GiftBag.Gift> gifts = resp.getData().getList();
             if (gifts == null) {
                 log.info("背包无礼物，停止执行此任务 ❌");
+                markCompleted();
                 return;
             }
-            List<JSONObject> expireGifts = new JSONArray(gifts).stream().map(JSONUtil::parseObj)
+            List<GiftBag.Gift> expireGifts = gifts.stream()
                     .filter(gift -> {
-                        Long expireAt = gift.getLong("expire_at");
+                        Long expireAt = gift.getExpireAt();
                         long now = System.currentTimeMillis() / 1000;
                         // 过滤3天内过期的礼物
                         return expireAt != 0 && (expireAt - now) < 60 * 60 * 24 * 3;
@@ -60,14 +64,15 @@ public class DonateGiftTask extends AbstractTask {
 
             if (expireGifts.isEmpty()) {
                 log.info("背包中没有即将过期礼物 ✔️");
+                markCompleted();
                 return;
             }
 
             expireGifts.forEach(gift -> {
                 JSONObject respDonate = delegate.donateGift(userId, roomId,
-                        gift.getStr("bag_id"),
-                        gift.getStr("gift_id"),
-                        gift.getInt("gift_num"));
+                        gift.getBagId(),
+                        gift.getGiftId(),
+                        gift.getGiftNum());
                 if (respDonate.getInt(CODE) == 0) {
                     String giftName = respDonate.getByPath("data.gift_name", String.class);
                     String giftNum = respDonate.getByPath("data.gift_num", String.class);
@@ -76,6 +81,7 @@ public class DonateGiftTask extends AbstractTask {
                     log.error("给直播间[{}]赠送礼物失败：{} ❌", roomId, respDonate.getStr(MESSAGE));
                 }
             });
+            markCompleted();
 
         } else {
             log.error("无法获取礼物背包 ❌");
@@ -90,9 +96,8 @@ public class DonateGiftTask extends AbstractTask {
         if ("0".equals(userId)) {
             userId = AUTHOR_MID;
         }
-        JSONObject resp = delegate.getLiveRoomInfo(userId);
-        if (resp.getInt(CODE) == 0) {
-            roomId = resp.getByPath("data.roomid", String.class);
+        roomId = delegate.getLiveRoomId(userId);
+        if (roomId != null) {
             return;
         }
         log.error("获取直播间信息失败，将为作者直播间[{}]送出礼物", AUTHOR_ROOM_ID);
@@ -6,6 +6,9 @@ import io.cruii.bilibili.component.BilibiliDelegate;
 import io.cruii.bilibili.entity.TaskConfig;
 import lombok.extern.log4j.Log4j2;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * 查询硬币变化情况
  *
@@ -21,7 +24,6 @@ public class GetCoinChangeLogTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         JSONObject resp = delegate.getCoinChangeLog();
@@ -48,4 +50,12 @@ public class GetCoinChangeLogTask extends AbstractTask {
     public String getName() {
         return "硬币变更日志";
     }
+
+    /**
+     * 需要在所有会改变硬币余额的任务完成后执行
+     */
+    @Override
+    public List<Class<? extends Task>> dependsOn() {
+        return Arrays.asList(CheckCookieTask.class, DonateCoinTask.class, Silver2CoinTask.class);
+    }
 }
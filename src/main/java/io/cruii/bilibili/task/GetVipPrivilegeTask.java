@@ -18,7 +18,6 @@ public class GetVipPrivilegeTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         BilibiliUser user = BilibiliUserContext.get();
@@ -26,9 +25,11 @@ public class GetVipPrivilegeTask extends AbstractTask {
         Integer vipType = user.getVipType();
         if (vipType == 0 || user.getVipStatus() != 1) {
             log.info("该账号非大会员，取消执行领取大会员权益 ❌");
+            markCompleted();
             return;
         }
 
+        boolean received = true;
         JSONObject rewardResp = delegate.getMangaVipReward();
         if (rewardResp.getInt(CODE) == 0) {
             int amount = rewardResp.getByPath("data.amount", Integer.class);
@@ -37,6 +38,7 @@ public class GetVipPrivilegeTask extends AbstractTask {
             log.info("本月漫读券已领取 ✔️");
         } else {
             log.info("领取漫读劵失败：{} ❌", rewardResp.getStr("msg"));
+            received = false;
         }
 
         JSONObject bCoinResp = delegate.getVipReward(1);
@@ -46,6 +48,7 @@ public class GetVipPrivilegeTask extends AbstractTask {
             log.info("本月B币券已领取 ✔️");
         } else {
             log.info("领取B币券失败：{} ❌", bCoinResp.getStr(MESSAGE));
+            received = false;
         }
 
         JSONObject vipShopReward = delegate.getVipReward(2);
@@ -55,6 +58,11 @@ public class GetVipPrivilegeTask extends AbstractTask {
             log.info("本月会员购优惠券已领取 ✔️");
         } else {
             log.info("领取会员购优惠券失败：{} ❌", vipShopReward.getStr(MESSAGE));
+            received = false;
+        }
+
+        if (received) {
+            markCompleted();
         }
     }
 
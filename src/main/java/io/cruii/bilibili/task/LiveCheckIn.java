@@ -16,15 +16,17 @@ public class LiveCheckIn extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         JSONObject resp = delegate.liveCheckIn();
         if (resp.getInt(CODE) == 0) {
             log.info("直播签到成功，本次获得{},{} ✔️", resp.getByPath("data.text", String.class),
                     resp.getByPath("data.specialText", String.class));
+            markCompleted();
         } else if (resp.getInt(CODE) == 1011040){
+            // 今日已签到
             log.info("直播签到失败： {} ❌", resp.getStr(MESSAGE));
+            markCompleted();
         }
     }
 
@@ -18,14 +18,15 @@ public class MangaTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         JSONObject resp = delegate.mangaCheckIn(delegate.getConfig().getDevicePlatform());
         if (resp != null && "0".equals(resp.getStr(CODE).trim())) {
             log.info("漫画签到成功 ✔️");
+            markCompleted();
         } else if (resp != null && MANGA_CLOCK_IN_DUPLICATE.equals(resp.getStr("msg"))) {
             log.info("已完成漫画签到 ✔️ ");
+            markCompleted();
         } else {
             log.error("漫画签到失败：{} ❌", resp);
         }
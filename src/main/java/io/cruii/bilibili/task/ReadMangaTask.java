@@ -16,12 +16,12 @@ public class ReadMangaTask extends AbstractTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         JSONObject resp = delegate.readManga();
         if (resp.getInt(CODE) == 0) {
             log.info("完成漫画阅读 ✔️");
+            markCompleted();
         } else {
             log.info("阅读失败：{} ❌", resp);
         }
@@ -19,33 +19,28 @@ public class Silver2CoinTask extends AbstractTask {
 
     @Override
     public void run() {
-        if (checkWallet()) {
+        int silver = getNumOfSilver();
+        if (silver < 0) {
+            log.error("获取银瓜子余额失败 ❌");
+        } else if (silver >= THRESHOLD) {
             doExchange();
             log.info("当前银瓜子余额为：{}", getNumOfSilver());
         } else {
-            log.info("银瓜子余额为[{}]，不足[{}]，无法执行兑换 ❌", getNumOfSilver(), THRESHOLD);
+            log.info("银瓜子余额为[{}]，不足[{}]，无法执行兑换 ❌", silver, THRESHOLD);
+            // 今日无需兑换
+            markCompleted();
         }
     }
 
-    /**
-     * 检查钱包余额
-     *
-     * @return 是否大于阈值
-     */
-    private boolean checkWallet() {
-        int current = getNumOfSilver();
-        return current >= THRESHOLD;
-    }
-
     /**
      * 获取银瓜子余额
      *
-     * @return 银瓜子余额
+     * @return 银瓜子余额，获取失败时为-1
      */
     private int getNumOfSilver() {
         JSONObject resp = delegate.getLiveWallet();
         if (resp == null || resp.getObj("data") == null) {
-            return 0;
+            return -1;
         }
         JSONObject wallet = resp.getJSONObject("data");
         return wallet.getInt("silver");
@@ -58,6 +53,7 @@ public class Silver2CoinTask extends AbstractTask {
         JSONObject resp = delegate.silver2Coin();
         if (resp.getInt(CODE) == 0) {
             log.info("兑换硬币成功 ✔️");
+            markCompleted();
         } else {
             log.error("兑换失败：{} ❌", resp.getStr(MESSAGE));
         }
@@ -1,5 +1,8 @@
 package io.cruii.bilibili.task;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 任务接口
  *
@@ -12,4 +15,21 @@ public interface Task {
 
     String getName();
 
+    /**
+     * 执行该任务前必须完成的任务，没有依赖关系的任务之间可以并行执行
+     *
+     * @return 前置任务
+     */
+    default List<Class<? extends Task>> dependsOn() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 今日的任务目标是否已达成，达成后当日再次执行时会被跳过
+     *
+     * @return 是否已达成
+     */
+    default boolean isCompleted() {
+        return false;
+    }
 }
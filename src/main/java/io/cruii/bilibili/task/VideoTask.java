@@ -3,11 +3,14 @@ package io.cruii.bilibili.task;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import io.cruii.bilibili.component.BilibiliDelegate;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.VideoDetails;
 import lombok.extern.log4j.Log4j2;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author cruii
@@ -49,17 +52,29 @@ public abstract class VideoTask extends AbstractTask {
 
     VideoTask(BilibiliDelegate delegate) {
         super(delegate);
-        initFollowList();
-        initTrend();
+        initVideos();
+    }
+
+    /**
+     * 同时请求关注列表与热榜，两者互不依赖
+     */
+    protected void initVideos() {
+        CompletableFuture<JSONObject> followResp = delegate.getFollowedUpPostVideoAsync();
+        int index = random.nextInt(regionIds.length);
+        CompletableFuture<List<String>> trendVideos = delegate.listTrendVideosAsync(String.valueOf(regionIds[index]));
+        // 关注列表获取失败时使用热榜视频，需要先初始化热榜
+        trend.clear();
+        trend.addAll(trendVideos.join());
+        initFollowList(followResp);
     }
 
     /**
      * 初始化已关注UP主最近发布视频的BVID
      */
-    protected void initFollowList() {
+    private void initFollowList(CompletableFuture<JSONObject> followResp) {
         follow.clear();
         try {
-            JSONObject resp = delegate.getFollowedUpPostVideo();
+            JSONObject resp = followResp.join();
             JSONArray videos = resp.getJSONObject("data").getJSONArray("cards");
             if (videos == null || videos.isEmpty()) {
                 return;
@@ -74,21 +89,6 @@ public abstract class VideoTask extends AbstractTask {
         }
     }
 
-    /**
-     * 初始化热门视频的BVID
-     */
-    protected void initTrend() {
-        trend.clear();
-        int index = random.nextInt(regionIds.length);
-        String regionId = String.valueOf(regionIds[index]);
-        JSONObject resp = delegate.getTrendVideo(regionId);
-        JSONArray videos = resp.getJSONArray("data");
-        for (Object video : videos) {
-            String bvid = ((JSONObject) video).getStr("bvid");
-            trend.add(bvid);
-        }
-    }
-
     /**
      * 获取视频标题
      *
@@ -97,13 +97,13 @@ public abstract class VideoTask extends AbstractTask {
      */
     public String getVideoTitle(String bvid) {
         String title;
-        JSONObject detailsResp = delegate.getVideoDetails(bvid);
-        if (detailsResp.getInt(CODE) == 0) {
-            title = detailsResp.getByPath("data.owner.name", String.class)
-                    + "：" + detailsResp.getByPath("data.title", String.class);
+        BilibiliResponse<VideoDetails> detailsResp = delegate.getVideoDetails(bvid);
+        if (detailsResp.isSuccess()) {
+            VideoDetails details = detailsResp.getData();
+            title = details.getOwner().getName() + "：" + details.getTitle();
         } else {
             title = "？？？？？？";
-            log.error("获取[{}]的视频标题出错：{}", bvid, detailsResp.getStr(MESSAGE));
+            log.error("获取[{}]的视频标题出错：{}", bvid, detailsResp.getMessage());
         }
 
         return title;
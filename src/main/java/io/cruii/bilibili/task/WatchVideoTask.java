@@ -17,23 +17,28 @@ public class WatchVideoTask extends VideoTask {
 
     @Override
     public void run() {
-        checkAttemptsAndChangeProxy();
         addAttempts();
 
         JSONObject resp = delegate.getExpRewardStatus();
         // 从热榜中随机选取一个视频
         String bvid = trend.get(random.nextInt(trend.size()));
 
+        boolean watched = true;
         if (Boolean.FALSE.equals(resp.getByPath("data.watch", Boolean.class))) {
-            playVideo(bvid);
+            watched = playVideo(bvid);
         } else {
             log.info("今日观看视频任务已完成 ✔️");
         }
 
+        boolean shared = true;
         if (Boolean.FALSE.equals(resp.getByPath("data.share", Boolean.class))) {
-            shareVideo(bvid);
+            shared = shareVideo(bvid);
             log.info("今日分享视频任务已完成 ✔️");
         }
+
+        if (watched && shared) {
+            markCompleted();
+        }
     }
 
     @Override
@@ -43,16 +48,19 @@ public class WatchVideoTask extends VideoTask {
 
     /**
      * 播放视频
+     *
+     * @return 是否播放成功
      */
-    private void playVideo(String bvid) {
+    private boolean playVideo(String bvid) {
         int playedTime = random.nextInt(90) + 10;
         JSONObject resp = delegate.playVideo(bvid, playedTime);
         if (resp.getInt(CODE) == 0) {
             String title = getVideoTitle(bvid);
             log.info("播放视频[{}]成功,已观看至{}秒 ✔️", title, playedTime);
-        } else {
-            log.error("播放视频[{}]出错：{} ❌", bvid, resp.getStr(MESSAGE));
+            return true;
         }
+        log.error("播放视频[{}]出错：{} ❌", bvid, resp.getStr(MESSAGE));
+        return false;
     }
 
 
@@ -60,14 +68,16 @@ public class WatchVideoTask extends VideoTask {
      * 分享视频
      *
      * @param bvid 视频的BVID
+     * @return 是否分享成功
      */
-    private void shareVideo(String bvid) {
+    private boolean shareVideo(String bvid) {
         JSONObject resp = delegate.shareVideo(bvid);
         String title = getVideoTitle(bvid);
         if (resp.getInt(CODE) == 0) {
             log.info("分享视频[{}]成功 ✔️", title);
-        } else {
-            log.error("分享视频[{}]失败：{} ❌", title, resp.getStr(MESSAGE));
+            return true;
         }
+        log.error("分享视频[{}]失败：{} ❌", title, resp.getStr(MESSAGE));
+        return false;
     }
 }
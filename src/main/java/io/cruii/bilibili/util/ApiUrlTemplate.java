@@ -0,0 +1,97 @@
+package io.cruii.bilibili.util;
+
+import io.cruii.bilibili.constant.BilibiliAPI;
+import org.springframework.util.MultiValueMap;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link BilibiliAPI} 中接口地址的预解析结果
+ * <p>
+ * 接口名与查询字符串的分隔符在创建时确定，拼接参数时只做一次字符串构建，
+ * 不再经过 {@link org.springframework.web.util.UriComponentsBuilder} 解析地址。
+ * {@link BilibiliAPI} 中接口的模板由 {@link BilibiliApiUtil} 在读取接口定义时一并创建
+ *
+ * @author cruii
+ * Created on 2022/01/20
+ */
+public final class ApiUrlTemplate {
+    private final String url;
+    private final String endpoint;
+    /**
+     * 第一个参数前的分隔符，地址本身带有查询字符串时为'&'
+     */
+    private final char separator;
+
+    ApiUrlTemplate(String url, String endpoint) {
+        this.url = url;
+        this.endpoint = endpoint;
+        this.separator = url.indexOf('?') < 0 ? '?' : '&';
+    }
+
+    /**
+     * 获取接口地址的模板
+     *
+     * @param url 接口地址
+     * @return {@link BilibiliAPI} 中的接口返回预先创建的模板，其他地址临时创建
+     */
+    public static ApiUrlTemplate of(String url) {
+        ApiUrlTemplate template = BilibiliApiUtil.templateOf(url);
+        return template != null ? template : new ApiUrlTemplate(url, BilibiliApiUtil.endpointOf(url));
+    }
+
+    /**
+     * @return {@link BilibiliAPI} 中的常量名，不是B站API时为null
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * 拼接查询字符串，只有包含特殊字符的参数值才会编码
+     *
+     * @param params 查询字符串参数，值为null时只保留参数名
+     * @return 完整的请求地址
+     */
+    public String expand(MultiValueMap<String, String> params) {
+        if (params == null || params.isEmpty()) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(url.length() + params.size() * 24).append(url);
+        char sep = separator;
+        for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+            for (String value : entry.getValue()) {
+                sb.append(sep).append(entry.getKey());
+                if (value != null) {
+                    sb.append('=');
+                    appendValue(sb, value);
+                }
+                sep = '&';
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isSafe(value.charAt(i))) {
+                try {
+                    sb.append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+                return;
+            }
+        }
+        sb.append(value);
+    }
+
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~' || c == ',' || c == ':';
+    }
+}
@@ -0,0 +1,93 @@
+package io.cruii.bilibili.util;
+
+import io.cruii.bilibili.constant.BilibiliAPI;
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 根据请求地址识别 {@link BilibiliAPI} 中定义的接口
+ *
+ * @author cruii
+ * Created on 2022/01/19
+ */
+@Log4j2
+public class BilibiliApiUtil {
+    /**
+     * 不含查询字符串的接口地址与常量名的对应关系
+     */
+    private static final Map<String, String> ENDPOINTS;
+    /**
+     * 接口地址（常量值）与预解析模板的对应关系
+     */
+    private static final Map<String, ApiUrlTemplate> TEMPLATES;
+
+    static {
+        Map<String, String> endpoints = new HashMap<>();
+        Map<String, ApiUrlTemplate> templates = new HashMap<>();
+        for (Field field : BilibiliAPI.class.getFields()) {
+            if (field.getType() != String.class || !Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            try {
+                String url = (String) field.get(null);
+                endpoints.put(stripQuery(url), field.getName());
+                templates.put(url, new ApiUrlTemplate(url, field.getName()));
+            } catch (IllegalAccessException e) {
+                log.error("无法读取接口地址[{}]", field.getName(), e);
+            }
+        }
+        ENDPOINTS = Collections.unmodifiableMap(endpoints);
+        TEMPLATES = Collections.unmodifiableMap(templates);
+    }
+
+    private BilibiliApiUtil() {
+    }
+
+    /**
+     * 获取请求地址对应的接口名
+     *
+     * @param url 请求地址
+     * @return {@link BilibiliAPI} 中的常量名，不是B站API时返回null
+     */
+    public static String endpointOf(String url) {
+        return ENDPOINTS.get(stripQuery(url));
+    }
+
+    /**
+     * 获取接口地址的预解析模板
+     *
+     * @param url 接口地址
+     * @return {@link BilibiliAPI} 中的接口返回模板，其他地址返回null
+     */
+    static ApiUrlTemplate templateOf(String url) {
+        return TEMPLATES.get(url);
+    }
+
+    /**
+     * 配置项中的接口名可以写作 DONATE_COIN、donate-coin 等形式，统一后再比较
+     *
+     * @param name 接口名
+     * @return 去除分隔符的小写接口名
+     */
+    public static String normalize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String stripQuery(String url) {
+        int index = url.indexOf('?');
+        String path = index < 0 ? url : url.substring(0, index);
+        // 接口在常量中使用http，实际请求可能为https
+        return path.startsWith("https://") ? "http://" + path.substring("https://".length()) : path;
+    }
+}
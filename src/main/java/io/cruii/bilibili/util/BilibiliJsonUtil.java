@@ -0,0 +1,65 @@
+package io.cruii.bilibili.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.cruii.bilibili.model.BilibiliResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 将B站API的响应直接绑定为 {@link io.cruii.bilibili.model} 中的类型
+ * <p>
+ * 响应内容由流式解析器逐个读取，模型中未定义的字段直接跳过，不会创建中间的JSON树
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+public class BilibiliJsonUtil {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private BilibiliJsonUtil() {
+    }
+
+    /**
+     * data部分为指定类型的响应
+     *
+     * @param dataType data部分的类型
+     * @return 响应类型
+     */
+    public static JavaType responseOf(Class<?> dataType) {
+        return MAPPER.getTypeFactory().constructParametricType(BilibiliResponse.class, dataType);
+    }
+
+    /**
+     * data部分为指定类型列表的响应
+     *
+     * @param elementType 列表元素的类型
+     * @return 响应类型
+     */
+    public static JavaType responseOfList(Class<?> elementType) {
+        TypeFactory typeFactory = MAPPER.getTypeFactory();
+        return typeFactory.constructParametricType(BilibiliResponse.class,
+                typeFactory.constructCollectionType(List.class, elementType));
+    }
+
+    /**
+     * 绑定响应内容
+     *
+     * @param body 响应内容
+     * @param type 响应类型，见 {@link #responseOf(Class)}
+     * @return 绑定后的响应
+     * @throws UncheckedIOException 响应内容不是合法的JSON或与类型不匹配
+     */
+    public static <T> T bind(String body, JavaType type) {
+        try {
+            return MAPPER.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+-- 账号每日任务执行记录，MySQL部署升级时执行一次
+CREATE TABLE IF NOT EXISTS `task_run` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `dedeuserid` VARCHAR(32) NOT NULL COMMENT 'B站uid',
+    `run_date` DATE NOT NULL COMMENT '执行日期',
+    `status` VARCHAR(16) NOT NULL COMMENT '执行状态',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    `release_time` DATETIME NULL COMMENT '放入任务队列的时间',
+    `owner` VARCHAR(128) NULL COMMENT '持有租约的节点',
+    `lease_until` DATETIME NULL COMMENT '租约到期时间',
+    `completed_tasks` BIGINT NOT NULL DEFAULT 0 COMMENT '今日已完成的任务位图',
+    `update_time` DATETIME NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_dedeuserid_run_date` (`dedeuserid`, `run_date`),
+    KEY `idx_run_date_status_release_time` (`run_date`, `status`, `release_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '账号每日任务执行记录';
@@ -40,5 +40,19 @@ CREATE TABLE IF NOT EXISTS `task_config` (
     `bili_push` BOOLEAN DEFAULT FALSE,
     `follow_developer` BOOLEAN DEFAULT FALSE,
     primary key (`id`)
-)
+);
 
+CREATE TABLE IF NOT EXISTS `task_run` (
+    `id` IDENTITY NOT NULL AUTO_INCREMENT,
+    `dedeuserid` VARCHAR NOT NULL ,
+    `run_date` DATE NOT NULL ,
+    `status` VARCHAR NOT NULL ,
+    `attempts` INT DEFAULT 0,
+    `release_time` TIMESTAMP NULL ,
+    `owner` VARCHAR NULL ,
+    `lease_until` TIMESTAMP NULL ,
+    `completed_tasks` BIGINT DEFAULT 0,
+    `update_time` TIMESTAMP NULL ,
+    primary key (`id`),
+    unique (`dedeuserid`, `run_date`)
+);
@@ -0,0 +1,160 @@
+package io.cruii.bilibili.benchmark;
+
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.http.Header;
+import cn.hutool.json.JSONUtil;
+import io.cruii.bilibili.component.RequestTemplate;
+import io.cruii.bilibili.config.TimeoutConfig;
+import io.cruii.bilibili.constant.BilibiliAPI;
+import io.cruii.bilibili.entity.TaskConfig;
+import io.cruii.bilibili.util.ApiUrlTemplate;
+import io.cruii.bilibili.util.BilibiliApiUtil;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比创建请求的两种方式：每次拼接Cookie、解析地址并创建 {@link RequestConfig}，
+ * 与复用账号的 {@link RequestTemplate}、{@link ApiUrlTemplate} 及按接口缓存的 {@link RequestConfig}
+ * <p>
+ * 直接运行 {@link #main(String[])}，结果中的gc.alloc.rate.norm为每次创建请求分配的字节数
+ *
+ * @author cruii
+ * Created on 2022/01/23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestTemplateBenchmark {
+    private static final ContentType FORM_URLENCODED = ContentType.create("application/x-www-form-urlencoded", StandardCharsets.UTF_8);
+    private static final String UA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.198 Safari/537.36";
+    private static final String PROXY_HOST = "127.0.0.1";
+    private static final int PROXY_PORT = 8080;
+
+    private TaskConfig config;
+    private TimeoutConfig timeoutConfig;
+    private RequestTemplate requestTemplate;
+    private HttpHost proxy;
+    private final Map<String, RequestConfig> requestConfigs = new ConcurrentHashMap<>();
+    private MultiValueMap<String, String> params;
+    private String requestBody;
+
+    @Setup
+    public void setup() {
+        config = new TaskConfig();
+        config.setDedeuserid("287969457");
+        config.setSessdata("3b2c1a9f%2C1658900000%2Cabcde*11");
+        config.setBiliJct("0f6e5d4c3b2a19080f6e5d4c3b2a1908");
+        config.setUserAgent(UA);
+        timeoutConfig = new TimeoutConfig();
+        requestTemplate = new RequestTemplate(config);
+        proxy = new HttpHost(PROXY_HOST, PROXY_PORT);
+
+        params = new LinkedMultiValueMap<>();
+        params.add("bvid", "BV1GJ411x7h7");
+        requestBody = "aid=80433022&multiply=1&select_like=0&cross_domain=true&csrf=" + config.getBiliJct();
+    }
+
+    @Benchmark
+    public HttpGet getPerRequest() {
+        String url = UriComponentsBuilder.fromHttpUrl(BilibiliAPI.GET_VIDEO_DETAILS)
+                .queryParams(params)
+                .build().toUriString();
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.setConfig(perRequestConfig(BilibiliApiUtil.endpointOf(url)));
+        httpGet.setHeader(Header.CONNECTION.getValue(), "keep-alive");
+        httpGet.setHeader(Header.USER_AGENT.getValue(), config.getUserAgent());
+        httpGet.setHeader(Header.COOKIE.getValue(), cookie());
+        return httpGet;
+    }
+
+    @Benchmark
+    public HttpGet getTemplate() {
+        ApiUrlTemplate api = ApiUrlTemplate.of(BilibiliAPI.GET_VIDEO_DETAILS);
+        return requestTemplate.get(api.expand(params), cachedRequestConfig(api.getEndpoint()));
+    }
+
+    @Benchmark
+    public HttpPost postPerRequest() {
+        HttpPost httpPost = new HttpPost(BilibiliAPI.DONATE_COIN);
+        httpPost.setConfig(perRequestConfig(BilibiliApiUtil.endpointOf(BilibiliAPI.DONATE_COIN)));
+        httpPost.setHeader(Header.CONNECTION.getValue(), "keep-alive");
+        httpPost.setHeader(Header.USER_AGENT.getValue(), config.getUserAgent());
+        httpPost.setHeader(Header.REFERER.getValue(), "https://www.bilibili.com/");
+        httpPost.setHeader(Header.COOKIE.getValue(), cookie());
+        ContentType contentType = JSONUtil.isJson(requestBody) ?
+                ContentType.APPLICATION_JSON : FORM_URLENCODED;
+        httpPost.setEntity(new StringEntity(CharSequenceUtil.nullToEmpty(requestBody), contentType));
+        return httpPost;
+    }
+
+    @Benchmark
+    public HttpPost postTemplate() {
+        String endpoint = ApiUrlTemplate.of(BilibiliAPI.DONATE_COIN).getEndpoint();
+        return requestTemplate.post(BilibiliAPI.DONATE_COIN, requestBody, null, cachedRequestConfig(endpoint));
+    }
+
+    private RequestConfig perRequestConfig(String endpoint) {
+        int connectTimeout = (int) timeoutConfig.getConnect(endpoint).toMillis();
+        return RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout((int) timeoutConfig.getRead(endpoint).toMillis())
+                .setConnectionRequestTimeout(connectTimeout)
+                .setProxy(new HttpHost(PROXY_HOST, PROXY_PORT))
+                .build();
+    }
+
+    private RequestConfig cachedRequestConfig(String endpoint) {
+        return requestConfigs.computeIfAbsent(endpoint, key -> {
+            int connectTimeout = (int) timeoutConfig.getConnect(endpoint).toMillis();
+            return RequestConfig.custom()
+                    .setConnectTimeout(connectTimeout)
+                    .setSocketTimeout((int) timeoutConfig.getRead(endpoint).toMillis())
+                    .setConnectionRequestTimeout(connectTimeout)
+                    .setProxy(proxy)
+                    .build();
+        });
+    }
+
+    private String cookie() {
+        return "bili_jct=" + config.getBiliJct() +
+                ";SESSDATA=" + config.getSessdata() +
+                ";DedeUserID=" + config.getDedeuserid() + ";";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RequestTemplateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,134 @@
+package io.cruii.bilibili.benchmark;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.databind.JavaType;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.NavInfo;
+import io.cruii.bilibili.model.TrendVideo;
+import io.cruii.bilibili.model.VideoDetails;
+import io.cruii.bilibili.util.BilibiliJsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比高频接口响应的两种解析方式：解析为完整的 {@link JSONObject} 后按路径读取字段，
+ * 与流式绑定为 {@link io.cruii.bilibili.model} 中的类型
+ * <p>
+ * 直接运行 {@link #main(String[])}，结果中的gc.alloc.rate.norm为每次解析分配的字节数
+ *
+ * @author cruii
+ * Created on 2022/01/22
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBindingBenchmark {
+    private static final JavaType NAV_RESPONSE = BilibiliJsonUtil.responseOf(NavInfo.class);
+    private static final JavaType VIDEO_DETAILS_RESPONSE = BilibiliJsonUtil.responseOf(VideoDetails.class);
+    private static final JavaType TREND_VIDEO_RESPONSE = BilibiliJsonUtil.responseOfList(TrendVideo.class);
+
+    private String nav;
+    private String videoDetails;
+    private String trendVideo;
+
+    @Setup
+    public void setup() {
+        nav = ResourceUtil.readStr("benchmark/nav.json", StandardCharsets.UTF_8);
+        videoDetails = ResourceUtil.readStr("benchmark/video-details.json", StandardCharsets.UTF_8);
+        trendVideo = ResourceUtil.readStr("benchmark/trend-video.json", StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void navTree(Blackhole bh) {
+        JSONObject data = JSONUtil.parseObj(nav).getJSONObject("data");
+        bh.consume(data.getBool("isLogin"));
+        bh.consume(data.getStr("face"));
+        bh.consume(data.getStr("uname"));
+        bh.consume(data.getStr("money"));
+        JSONObject vip = data.getJSONObject("vip");
+        bh.consume(vip.getInt("type"));
+        bh.consume(vip.getInt("status"));
+        JSONObject levelInfo = data.getJSONObject("level_info");
+        bh.consume(levelInfo.getInt("current_level"));
+        bh.consume(levelInfo.getInt("current_exp"));
+        bh.consume(levelInfo.getInt("next_exp"));
+    }
+
+    @Benchmark
+    public void navBinding(Blackhole bh) {
+        BilibiliResponse<NavInfo> resp = BilibiliJsonUtil.bind(nav, NAV_RESPONSE);
+        NavInfo data = resp.getData();
+        bh.consume(data.getIsLogin());
+        bh.consume(data.getFace());
+        bh.consume(data.getUname());
+        bh.consume(data.getMoney());
+        bh.consume(data.getVip().getType());
+        bh.consume(data.getVip().getStatus());
+        bh.consume(data.getLevelInfo().getCurrentLevel());
+        bh.consume(data.getLevelInfo().getCurrentExp());
+        bh.consume(data.getLevelInfo().getNextExp());
+    }
+
+    @Benchmark
+    public void videoDetailsTree(Blackhole bh) {
+        JSONObject resp = JSONUtil.parseObj(videoDetails);
+        bh.consume(resp.getInt("code"));
+        bh.consume(resp.getByPath("data.owner.name", String.class));
+        bh.consume(resp.getByPath("data.title", String.class));
+    }
+
+    @Benchmark
+    public void videoDetailsBinding(Blackhole bh) {
+        BilibiliResponse<VideoDetails> resp = BilibiliJsonUtil.bind(videoDetails, VIDEO_DETAILS_RESPONSE);
+        bh.consume(resp.getCode());
+        bh.consume(resp.getData().getOwner().getName());
+        bh.consume(resp.getData().getTitle());
+    }
+
+    @Benchmark
+    public void trendVideoTree(Blackhole bh) {
+        JSONArray data = JSONUtil.parseObj(trendVideo).getJSONArray("data");
+        for (Object video : data) {
+            bh.consume(((JSONObject) video).getStr("bvid"));
+        }
+    }
+
+    @Benchmark
+    public void trendVideoBinding(Blackhole bh) {
+        BilibiliResponse<List<TrendVideo>> resp = BilibiliJsonUtil.bind(trendVideo, TREND_VIDEO_RESPONSE);
+        for (TrendVideo video : resp.getData()) {
+            bh.consume(video.getBvid());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResponseBindingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
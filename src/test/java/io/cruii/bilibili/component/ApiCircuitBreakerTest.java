@@ -0,0 +1,122 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CircuitBreakerConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class ApiCircuitBreakerTest {
+    private static final String KEY = "DONATE_COIN";
+
+    private CircuitBreakerConfig config;
+    private ApiCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        config = new CircuitBreakerConfig();
+        config.setFailureThreshold(3);
+        config.setOpenDuration(Duration.ofMillis(100L));
+        config.setHalfOpenProbes(2);
+        breaker = new ApiCircuitBreaker(config);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        breaker.onFailure(KEY);
+        breaker.onFailure(KEY);
+        assertTrue(breaker.tryAcquire(KEY));
+        // 成功后重新计数
+        breaker.onSuccess(KEY);
+        breaker.onFailure(KEY);
+        breaker.onFailure(KEY);
+        assertTrue(breaker.tryAcquire(KEY));
+
+        breaker.onFailure(KEY);
+        assertFalse(breaker.tryAcquire(KEY));
+        assertEquals("OPEN(3)", breaker.stats().get(KEY));
+    }
+
+    @Test
+    public void halfOpenAdmitsOnlyConfiguredProbes() throws InterruptedException {
+        open();
+        TimeUnit.MILLISECONDS.sleep(150L);
+
+        assertTrue(breaker.tryAcquire(KEY));
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+        assertEquals("HALF_OPEN(3)", breaker.stats().get(KEY));
+    }
+
+    @Test
+    public void failedProbeReopens() throws InterruptedException {
+        open();
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertTrue(breaker.tryAcquire(KEY));
+
+        breaker.onFailure(KEY);
+        assertFalse(breaker.tryAcquire(KEY));
+        assertEquals("OPEN(4)", breaker.stats().get(KEY));
+
+        // 重新熔断后同样在到期后放行探测
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertTrue(breaker.tryAcquire(KEY));
+    }
+
+    @Test
+    public void successfulProbeCloses() throws InterruptedException {
+        open();
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertTrue(breaker.tryAcquire(KEY));
+
+        breaker.onSuccess(KEY);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire(KEY));
+        }
+        assertTrue(breaker.stats().isEmpty());
+    }
+
+    @Test
+    public void releaseReturnsProbeSlot() throws InterruptedException {
+        config.setHalfOpenProbes(1);
+        open();
+        TimeUnit.MILLISECONDS.sleep(150L);
+
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+        breaker.release(KEY);
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+    }
+
+    @Test
+    public void releaseDoesNothingWhenClosed() {
+        breaker.release(KEY);
+        breaker.onFailure(KEY);
+        breaker.release(KEY);
+        assertEquals("CLOSED(1)", breaker.stats().get(KEY));
+    }
+
+    @Test
+    public void disabledBreakerOrNullKeyAlwaysAdmits() {
+        assertTrue(breaker.tryAcquire(null));
+        config.setEnabled(false);
+        open();
+        assertTrue(breaker.tryAcquire(KEY));
+    }
+
+    private void open() {
+        for (int i = 0; i < config.getFailureThreshold(); i++) {
+            breaker.onFailure(KEY);
+        }
+    }
+}
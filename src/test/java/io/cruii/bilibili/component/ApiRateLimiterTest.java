@@ -0,0 +1,101 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.RateLimitConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class ApiRateLimiterTest {
+    private static final String ENDPOINT = "DONATE_COIN";
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    private RateLimitConfig config;
+    private ApiRateLimiter limiter;
+
+    @Before
+    public void setUp() {
+        config = new RateLimitConfig();
+        // 每100毫秒一次，允许连续5次
+        config.setDefaultRate(10D);
+        config.setBurst(5);
+        limiter = new ApiRateLimiter(config);
+    }
+
+    @Test
+    public void burstIsSentWithoutWaiting() {
+        for (int i = 0; i < config.getBurst(); i++) {
+            assertEquals(0L, limiter.reserve(ENDPOINT, null));
+        }
+    }
+
+    @Test
+    public void reservationsBeyondBurstWaitOneIntervalEach() {
+        for (int i = 0; i < config.getBurst(); i++) {
+            limiter.reserve(ENDPOINT, null);
+        }
+        long first = limiter.reserve(ENDPOINT, null);
+        long second = limiter.reserve(ENDPOINT, null);
+
+        assertTrue("wait " + first, first > INTERVAL / 2 && first <= INTERVAL);
+        assertTrue("wait " + second, second > INTERVAL * 3 / 2 && second <= INTERVAL * 2);
+    }
+
+    @Test
+    public void endpointsAreLimitedSeparately() {
+        for (int i = 0; i < config.getBurst() + 2; i++) {
+            limiter.reserve(ENDPOINT, null);
+        }
+        assertEquals(0L, limiter.reserve("SEND_GIFT", null));
+    }
+
+    @Test
+    public void disabledLimiterOrUnknownEndpointNeverWaits() {
+        for (int i = 0; i < config.getBurst() * 2; i++) {
+            assertEquals(0L, limiter.reserve(null, null));
+        }
+        config.setEnabled(false);
+        for (int i = 0; i < config.getBurst() * 2; i++) {
+            assertEquals(0L, limiter.reserve(ENDPOINT, null));
+        }
+    }
+
+    @Test
+    public void decreaseIsAppliedAtMostOncePerSecond() throws InterruptedException {
+        limiter.reserve(ENDPOINT, null);
+        limiter.onThrottled(ENDPOINT, null);
+        limiter.onThrottled(ENDPOINT, null);
+        limiter.onThrottled(ENDPOINT, null);
+        assertEquals(5D, rate(), 0.01D);
+
+        TimeUnit.MILLISECONDS.sleep(1100L);
+        limiter.onThrottled(ENDPOINT, null);
+        assertEquals(2.5D, rate(), 0.01D);
+        assertEquals(4L, limiter.stats().get("throttled"));
+    }
+
+    @Test
+    public void successRecoversRateUpToConfiguredValue() {
+        limiter.onThrottled(ENDPOINT, null);
+        assertEquals(5D, rate(), 0.01D);
+
+        // 每次恢复配置速率的2%，即每秒0.2次
+        limiter.onSuccess(ENDPOINT, null);
+        assertEquals(5.2D, rate(), 0.01D);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess(ENDPOINT, null);
+        }
+        assertEquals(10D, rate(), 0.01D);
+    }
+
+    private double rate() {
+        return (double) limiter.stats().get(ENDPOINT);
+    }
+}
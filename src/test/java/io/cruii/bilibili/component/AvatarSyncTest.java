@@ -0,0 +1,110 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.cruii.bilibili.config.AvatarConfig;
+import io.cruii.bilibili.config.TimeoutConfig;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class AvatarSyncTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AvatarSync avatarSync;
+    private File index;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        AvatarConfig config = new AvatarConfig();
+        config.setDir(folder.getRoot().getAbsolutePath());
+        config.setFlushDelay(Duration.ofMillis(200L));
+        index = new File(folder.getRoot(), "index.json");
+
+        BilibiliHttpClient httpClient = mock(BilibiliHttpClient.class);
+        when(httpClient.executeForResponseAsync(any(), any())).thenAnswer(invocation -> {
+            HttpUriRequest request = invocation.getArgument(0);
+            BilibiliHttpClient.ResponseReader<Object> reader = invocation.getArgument(1);
+            HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(new ByteArrayEntity(request.getURI().toString().getBytes(StandardCharsets.UTF_8)));
+            return CompletableFuture.completedFuture(reader.read(response));
+        });
+        ObjectUploader objectUploader = mock(ObjectUploader.class);
+        when(objectUploader.upload(anyString(), any(), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+
+        avatarSync = new AvatarSync(config, new TimeoutConfig(), httpClient, objectUploader);
+    }
+
+    @After
+    public void tearDown() {
+        avatarSync.shutdown();
+    }
+
+    @Test
+    public void changesWithinFlushDelayAreWrittenOnce() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            avatarSync.sync(String.valueOf(i), "http://i0.hdslb.com/bfs/face/" + i + ".jpg");
+        }
+        assertFalse(index.exists());
+        assertEquals(0L, avatarSync.stats().get("flushes"));
+
+        Thread.sleep(600L);
+
+        assertEquals(1L, avatarSync.stats().get("flushes"));
+        JSONObject json = JSONUtil.readJSONObject(index, StandardCharsets.UTF_8);
+        assertEquals(10, json.getJSONObject("urls").size());
+        assertEquals(10, json.getJSONObject("accounts").size());
+    }
+
+    @Test
+    public void unchangedAvatarDoesNotScheduleWrite() throws InterruptedException {
+        avatarSync.sync("1", "http://i0.hdslb.com/bfs/face/1.jpg");
+        Thread.sleep(600L);
+        assertEquals(1L, avatarSync.stats().get("flushes"));
+
+        avatarSync.sync("1", "http://i0.hdslb.com/bfs/face/1.jpg");
+        Thread.sleep(600L);
+
+        assertEquals(1L, avatarSync.stats().get("unchanged"));
+        assertEquals(1L, avatarSync.stats().get("flushes"));
+    }
+
+    @Test
+    public void shutdownWritesPendingChanges() {
+        avatarSync.sync("1", "http://i0.hdslb.com/bfs/face/1.jpg");
+        assertFalse(index.exists());
+
+        avatarSync.shutdown();
+
+        assertTrue(index.exists());
+        assertEquals(1L, avatarSync.stats().get("flushes"));
+        JSONObject json = JSONUtil.readJSONObject(index, StandardCharsets.UTF_8);
+        assertEquals("1", json.getJSONObject("accounts").keySet().iterator().next());
+    }
+}
@@ -0,0 +1,161 @@
+package io.cruii.bilibili.component;
+
+import cn.hutool.core.io.FileUtil;
+import io.cruii.bilibili.config.StorageConfig;
+import io.cruii.bilibili.storage.LocalObjectStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class ObjectUploaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StorageConfig config;
+    private GatedStorage storage;
+    private ObjectUploader uploader;
+
+    @Before
+    public void setUp() throws IOException {
+        config = new StorageConfig();
+        config.setType("local");
+        config.setWorkers(1);
+        config.setQueueCapacity(1);
+        config.setOfferTimeout(Duration.ofMillis(100L));
+        storage = new GatedStorage(folder.newFolder("storage").getAbsolutePath());
+        uploader = new ObjectUploader(config, storage);
+    }
+
+    @After
+    public void tearDown() {
+        storage.open();
+        uploader.shutdown();
+    }
+
+    @Test
+    public void unchangedHashIsSkipped() throws Exception {
+        storage.open();
+        File file = file("a", "avatar");
+
+        assertTrue(uploader.upload("1.png", file, "h1").get(1, TimeUnit.SECONDS));
+        assertTrue(uploader.upload("1.png", file, "h1").get(1, TimeUnit.SECONDS));
+
+        assertEquals(1, storage.puts("1.png"));
+        assertEquals(1L, uploader.stats().get("uploaded"));
+        assertEquals(1L, uploader.stats().get("skipped"));
+
+        assertTrue(uploader.upload("1.png", file("b", "changed"), "h2").get(1, TimeUnit.SECONDS));
+        assertEquals(2, storage.puts("1.png"));
+    }
+
+    @Test
+    public void pendingUploadsOfSameKeyAreCoalesced() throws Exception {
+        CompletableFuture<Boolean> blocker = uploader.upload("0.png", file("blocker", "0"), "h0");
+        assertTrue(storage.entered.await(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> first = uploader.upload("1.png", file("first", "first"), "h1");
+        CompletableFuture<Boolean> second = uploader.upload("1.png", file("second", "second"), "h2");
+        assertSame(first, second);
+        assertEquals(1L, uploader.stats().get("coalesced"));
+
+        storage.open();
+        assertTrue(blocker.get(1, TimeUnit.SECONDS));
+        assertTrue(second.get(1, TimeUnit.SECONDS));
+
+        assertEquals(1, storage.puts("1.png"));
+        assertEquals("second", FileUtil.readString(new File(storage.dir, "1.png"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void fullQueueRejectsAfterOfferTimeout() throws Exception {
+        CompletableFuture<Boolean> blocker = uploader.upload("0.png", file("blocker", "0"), "h0");
+        assertTrue(storage.entered.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = uploader.upload("1.png", file("queued", "1"), "h1");
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> rejected = uploader.upload("2.png", file("rejected", "2"), "h2");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100L);
+
+        try {
+            rejected.get(1, TimeUnit.SECONDS);
+            fail("expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(1L, uploader.stats().get("rejected"));
+
+        storage.open();
+        assertTrue(blocker.get(1, TimeUnit.SECONDS));
+        assertTrue(queued.get(1, TimeUnit.SECONDS));
+        assertEquals(0, storage.puts("2.png"));
+        assertFalse(new File(storage.dir, "2.png").exists());
+    }
+
+    private File file(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        FileUtil.writeString(content, file, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * 打开前阻塞上传线程的本地存储
+     */
+    private static class GatedStorage extends LocalObjectStorage {
+        private final String dir;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final Map<String, AtomicInteger> puts = new ConcurrentHashMap<>();
+
+        GatedStorage(String dir) {
+            super(dir);
+            this.dir = dir;
+        }
+
+        @Override
+        public void put(String key, File file) throws IOException {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            super.put(key, file);
+            puts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        int puts(String key) {
+            AtomicInteger count = puts.get(key);
+            return count == null ? 0 : count.get();
+        }
+    }
+}
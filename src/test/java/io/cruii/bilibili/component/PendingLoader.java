@@ -0,0 +1,38 @@
+package io.cruii.bilibili.component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * 缓存测试使用的加载函数，记录每次加载并由测试决定何时完成
+ *
+ * @author cruii
+ * Created on 2022/01/27
+ */
+class PendingLoader<K, V> implements Function<K, CompletableFuture<V>> {
+    private final List<CompletableFuture<V>> loads = new CopyOnWriteArrayList<>();
+
+    @Override
+    public CompletableFuture<V> apply(K key) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        loads.add(load);
+        return load;
+    }
+
+    /**
+     * @return 已发起的加载次数
+     */
+    int count() {
+        return loads.size();
+    }
+
+    CompletableFuture<V> get(int index) {
+        return loads.get(index);
+    }
+
+    CompletableFuture<V> last() {
+        return loads.get(loads.size() - 1);
+    }
+}
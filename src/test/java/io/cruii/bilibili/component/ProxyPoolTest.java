@@ -0,0 +1,198 @@
+package io.cruii.bilibili.component;
+
+import com.sun.net.httpserver.HttpServer;
+import io.cruii.bilibili.config.ProxyPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class ProxyPoolTest {
+    private ProxyPoolConfig config;
+    private BilibiliHttpClient httpClient;
+    private ProxyPool proxyPool;
+    private HttpServer server;
+
+    @Before
+    public void setUp() {
+        config = new ProxyPoolConfig();
+        httpClient = mock(BilibiliHttpClient.class);
+        when(httpClient.executeForStatusAsync(any())).thenReturn(CompletableFuture.completedFuture(200));
+        proxyPool = new ProxyPool(config, httpClient);
+    }
+
+    @After
+    public void tearDown() {
+        proxyPool.stop();
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void burstOfMissesFetchesOnceAndSkipsMalformedEntries() throws Exception {
+        AtomicInteger fetches = serve("{\"code\":0,\"data\":["
+                + "{\"ip\":\"127.0.0.2\",\"port\":8080},"
+                + "{\"ip\":\"127.0.0.3\"},"
+                + "{\"ip\":\"\",\"port\":80}]}");
+        config.setMinFetchInterval(Duration.ofMinutes(1L));
+        proxyPool.start();
+        for (int i = 0; i < 100; i++) {
+            proxyPool.acquire();
+        }
+        Thread.sleep(500L);
+
+        assertEquals(1, fetches.get());
+        Map<String, Object> stats = proxyPool.stats();
+        assertEquals(1, stats.get("ready"));
+        assertEquals(1L, stats.get("fetched"));
+        assertEquals(2L, stats.get("malformed"));
+        assertEquals("127.0.0.2:8080", proxyPool.acquire());
+    }
+
+    @Test
+    public void malformedProxyFailsCheckAndReleasesPermit() {
+        proxyPool.validate(Arrays.asList("127.0.0.2", "127.0.0.3:x", "127.0.0.4:8080"));
+
+        Map<String, Object> stats = proxyPool.stats();
+        assertEquals(1, stats.get("ready"));
+        assertEquals(2L, stats.get("rejected"));
+        assertEquals(0, checks().get("checking"));
+    }
+
+    @Test
+    public void expiredProxyIsNotSelected() throws InterruptedException {
+        config.setMaxAge(Duration.ofMillis(100L));
+        proxyPool.validate(Collections.singletonList("127.0.0.2:8080"));
+        assertEquals("127.0.0.2:8080", proxyPool.peek(null));
+        assertTrue(proxyPool.isAvailable("127.0.0.2:8080"));
+
+        Thread.sleep(150L);
+
+        assertNull(proxyPool.peek(null));
+        assertFalse(proxyPool.isAvailable("127.0.0.2:8080"));
+    }
+
+    @Test
+    public void excludedProxyIsNotSelected() {
+        proxyPool.validate(Collections.singletonList("127.0.0.2:8080"));
+        assertNull(proxyPool.peek("127.0.0.2:8080"));
+
+        proxyPool.validate(Collections.singletonList("127.0.0.3:8080"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("127.0.0.3:8080", proxyPool.peek("127.0.0.2:8080"));
+        }
+    }
+
+    @Test
+    public void proxyIsEvictedOnceMinSamplesReachedWithLowSuccessRate() {
+        config.setMinSamples(10);
+        config.setMinSuccessRate(0.5D);
+        proxyPool.validate(Arrays.asList("127.0.0.2:8080", "127.0.0.3:8080"));
+
+        for (int i = 0; i < 9; i++) {
+            proxyPool.onFailure("127.0.0.2:8080");
+            proxyPool.onResponse("127.0.0.3:8080", 100L);
+        }
+        assertTrue(proxyPool.isAvailable("127.0.0.2:8080"));
+        assertEquals(0L, proxyPool.stats().get("evicted"));
+
+        proxyPool.onFailure("127.0.0.2:8080");
+        proxyPool.onFailure("127.0.0.3:8080");
+
+        assertFalse(proxyPool.isAvailable("127.0.0.2:8080"));
+        assertTrue(proxyPool.isAvailable("127.0.0.3:8080"));
+        assertEquals(1L, proxyPool.stats().get("evicted"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("127.0.0.3:8080", proxyPool.peek(null));
+        }
+    }
+
+    @Test
+    public void validateNeverExceedsCheckConcurrency() throws Exception {
+        config.setCheckConcurrency(3);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        BlockingQueue<CompletableFuture<Integer>> pending = new LinkedBlockingQueue<>();
+        when(httpClient.executeForStatusAsync(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            candidates.add("127.0.0." + (i + 2) + ":8080");
+        }
+        Thread validator = new Thread(() -> proxyPool.validate(candidates));
+        validator.start();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            CompletableFuture<Integer> check = pending.poll(1, TimeUnit.SECONDS);
+            assertNotNull(check);
+            // 留出时间，检查是否有超出并发上限的检查被发起
+            Thread.sleep(20L);
+            assertTrue(inFlight.get() <= 3);
+            inFlight.decrementAndGet();
+            check.complete(200);
+        }
+        validator.join(1000L);
+
+        assertFalse(validator.isAlive());
+        assertEquals(3, maxInFlight.get());
+        assertEquals(10, proxyPool.stats().get("ready"));
+        assertEquals(0, checks().get("checking"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> checks() {
+        return (Map<String, Object>) proxyPool.stats().get("checks");
+    }
+
+    /**
+     * 启动本地代理服务商，返回被请求的次数
+     */
+    private AtomicInteger serve(String body) throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        config.setApi("http://127.0.0.1:" + server.getAddress().getPort() + "/proxies");
+        return requests;
+    }
+}
@@ -0,0 +1,131 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.RetryConfig;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class RetryPolicyTest {
+    private static final String IDEMPOTENT = "GET_VIDEO_DETAILS";
+    private static final String NON_IDEMPOTENT = "DONATE_COIN";
+
+    private RetryConfig config;
+    private RetryPolicy policy;
+
+    @Before
+    public void setUp() {
+        config = new RetryConfig();
+        policy = new RetryPolicy(config);
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithinJitter() {
+        long first = policy.onResponse(IDEMPOTENT, 1, System.nanoTime(), -500);
+        long second = policy.onResponse(IDEMPOTENT, 2, System.nanoTime(), -500);
+
+        assertInRange(first, 250L, 750L);
+        assertInRange(second, 500L, 1500L);
+    }
+
+    @Test
+    public void backoffIsCappedByMaxBackoff() {
+        config.setMaxAttempts(10);
+        config.setJitter(0D);
+        config.setMaxBackoff(Duration.ofSeconds(2L));
+
+        assertEquals(2000L, policy.onResponse(IDEMPOTENT, 8, System.nanoTime(), -500));
+    }
+
+    @Test
+    public void onlyRetriableCodesAreRetried() {
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, 1, System.nanoTime(), 0));
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, 1, System.nanoTime(), -101));
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, 1, System.nanoTime(), null));
+    }
+
+    @Test
+    public void nonIdempotentEndpointRetriesOnlyRejectedCodes() {
+        assertEquals(-1L, policy.onResponse(NON_IDEMPOTENT, 1, System.nanoTime(), -500));
+        assertTrue(policy.onResponse(NON_IDEMPOTENT, 1, System.nanoTime(), -412) >= 0);
+    }
+
+    @Test
+    public void idempotentEndpointRetriesAnyIoError() {
+        assertTrue(policy.onError(IDEMPOTENT, 1, System.nanoTime(), new SocketTimeoutException()) >= 0);
+        assertTrue(policy.onError(IDEMPOTENT, 1, System.nanoTime(), new IOException("响应内容无法解析")) >= 0);
+        assertEquals(-1L, policy.onError(IDEMPOTENT, 1, System.nanoTime(), new IllegalStateException()));
+    }
+
+    @Test
+    public void nonIdempotentEndpointRetriesOnlyWhenRequestWasNotProcessed() {
+        // 读取超时时请求可能已被处理
+        assertEquals(-1L, policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new SocketTimeoutException()));
+        assertEquals(-1L, policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new HttpResponseException(500, "error")));
+        assertTrue(policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new ConnectException()) >= 0);
+        assertTrue(policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new HttpResponseException(412, "blocked")) >= 0);
+        assertTrue(policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new HttpResponseException(429, "too many")) >= 0);
+    }
+
+    @Test
+    public void stopsAfterMaxAttempts() {
+        assertTrue(policy.onResponse(IDEMPOTENT, config.getMaxAttempts() - 1, System.nanoTime(), -500) >= 0);
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, config.getMaxAttempts(), System.nanoTime(), -500));
+        assertEquals(1L, policy.stats().get("exhausted"));
+    }
+
+    @Test
+    public void stopsWhenBackoffWouldExceedDeadline() {
+        long startNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(config.getDeadline().getSeconds());
+
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, 1, startNanos, -500));
+        assertEquals(1L, policy.stats().get("deadlineExceeded"));
+    }
+
+    @Test
+    public void endpointRuleOverridesGlobalSettings() {
+        RetryConfig.Rule rule = new RetryConfig.Rule();
+        rule.setMaxAttempts(1);
+        config.getRules().put(IDEMPOTENT, rule);
+        RetryConfig.Rule idempotent = new RetryConfig.Rule();
+        idempotent.setIdempotent(true);
+        config.getRules().put(NON_IDEMPOTENT, idempotent);
+
+        assertEquals(-1L, policy.onResponse(IDEMPOTENT, 1, System.nanoTime(), -500));
+        assertTrue(policy.onError(NON_IDEMPOTENT, 1, System.nanoTime(), new SocketTimeoutException()) >= 0);
+    }
+
+    @Test
+    public void onlyIdempotentReadOnlyEndpointsAreHedgeable() {
+        assertTrue(policy.isHedgeable(IDEMPOTENT));
+        assertFalse(policy.isHedgeable(NON_IDEMPOTENT));
+        assertFalse(policy.isHedgeable("BILI_LIVE_CHECK_IN"));
+        assertFalse(policy.isHedgeable(null));
+    }
+
+    @Test
+    public void readOnlyEndpointMarkedNonIdempotentIsNotHedgeable() {
+        RetryConfig.Rule rule = new RetryConfig.Rule();
+        rule.setIdempotent(false);
+        config.getRules().put(IDEMPOTENT, rule);
+
+        assertFalse(policy.isHedgeable(IDEMPOTENT));
+    }
+
+    private static void assertInRange(long actual, long min, long max) {
+        assertTrue("backoff " + actual, actual >= min && actual <= max);
+    }
+}
@@ -0,0 +1,115 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.LiveRoomInfo;
+import io.cruii.bilibili.model.SpaceInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class TargetInfoCacheTest {
+    private static final String USER_ID = "287969457";
+
+    private TargetInfoCache cache;
+    private final PendingLoader<String, BilibiliResponse<SpaceInfo>> spaceLoader = new PendingLoader<>();
+    private final PendingLoader<String, BilibiliResponse<LiveRoomInfo>> roomLoader = new PendingLoader<>();
+
+    @Before
+    public void setUp() {
+        CacheConfig config = new CacheConfig();
+        config.setNegativeTtl(Duration.ofMillis(200L));
+        cache = new TargetInfoCache(config);
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() {
+        CompletableFuture<Optional<SpaceInfo>> first = cache.getSpaceInfo(USER_ID, spaceLoader);
+        CompletableFuture<Optional<SpaceInfo>> second = cache.getSpaceInfo(USER_ID, spaceLoader);
+        assertEquals(1, spaceLoader.count());
+        assertFalse(second.isDone());
+
+        spaceLoader.get(0).complete(space(0, "cruii"));
+        assertEquals("cruii", first.join().get().getName());
+        assertEquals("cruii", second.join().get().getName());
+        assertEquals("cruii", cache.getSpaceInfo(USER_ID, spaceLoader).join().get().getName());
+        assertEquals(1, spaceLoader.count());
+    }
+
+    @Test
+    public void missingUserIsCachedForNegativeTtl() throws InterruptedException {
+        cache.getSpaceInfo(USER_ID, spaceLoader);
+        spaceLoader.get(0).complete(space(-404, null));
+
+        assertFalse(cache.getSpaceInfo(USER_ID, spaceLoader).join().isPresent());
+        assertEquals(1, spaceLoader.count());
+
+        TimeUnit.MILLISECONDS.sleep(250L);
+        cache.getSpaceInfo(USER_ID, spaceLoader);
+        assertEquals(2, spaceLoader.count());
+    }
+
+    @Test
+    public void positiveResultOutlivesNegativeTtl() throws InterruptedException {
+        cache.getRoomId(USER_ID, roomLoader);
+        roomLoader.get(0).complete(room(11526309L));
+
+        TimeUnit.MILLISECONDS.sleep(250L);
+        assertEquals(Optional.of("11526309"), cache.getRoomId(USER_ID, roomLoader).join());
+        assertEquals(1, roomLoader.count());
+    }
+
+    @Test
+    public void userWithoutRoomIsCachedForNegativeTtl() throws InterruptedException {
+        cache.getRoomId(USER_ID, roomLoader);
+        roomLoader.get(0).complete(room(0L));
+        assertFalse(cache.getRoomId(USER_ID, roomLoader).join().isPresent());
+        assertEquals(1, roomLoader.count());
+
+        TimeUnit.MILLISECONDS.sleep(250L);
+        cache.getRoomId(USER_ID, roomLoader);
+        assertEquals(2, roomLoader.count());
+    }
+
+    @Test
+    public void failuresAreNotCached() {
+        CompletableFuture<Optional<SpaceInfo>> failed = cache.getSpaceInfo(USER_ID, spaceLoader);
+        spaceLoader.get(0).complete(space(-412, null));
+        assertTrue(failed.isCompletedExceptionally());
+
+        cache.getSpaceInfo(USER_ID, spaceLoader);
+        assertEquals(2, spaceLoader.count());
+    }
+
+    private static BilibiliResponse<SpaceInfo> space(int code, String name) {
+        BilibiliResponse<SpaceInfo> resp = new BilibiliResponse<>();
+        resp.setCode(code);
+        if (name != null) {
+            SpaceInfo info = new SpaceInfo();
+            info.setName(name);
+            resp.setData(info);
+        }
+        return resp;
+    }
+
+    private static BilibiliResponse<LiveRoomInfo> room(long roomId) {
+        LiveRoomInfo info = new LiveRoomInfo();
+        info.setRoomId(roomId);
+        BilibiliResponse<LiveRoomInfo> resp = new BilibiliResponse<>();
+        resp.setCode(0);
+        resp.setData(info);
+        return resp;
+    }
+}
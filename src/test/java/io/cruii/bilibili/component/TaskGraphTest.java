@@ -0,0 +1,210 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.task.Task;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class TaskGraphTest {
+
+    @Test
+    public void dependentsRunAfterTheirPrerequisites() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // 声明顺序与依赖顺序相反
+            List<Task> tasks = Arrays.asList(new Third(), new Second(), new First(), new Independent());
+            boolean expired = new TaskGraph(tasks)
+                    .run(task -> CompletableFuture.supplyAsync(() -> {
+                        order.add(task.getName());
+                        return false;
+                    }, executor), 4)
+                    .get(1L, TimeUnit.SECONDS);
+
+            assertFalse(expired);
+            assertEquals(4, order.size());
+            assertTrue(order.indexOf("First") < order.indexOf("Second"));
+            assertTrue(order.indexOf("Second") < order.indexOf("Third"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runningTasksNeverExceedParallelism() {
+        Map<String, CompletableFuture<Boolean>> started = new LinkedHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Task> tasks = Arrays.asList(new First(), new Independent(), new Other(), new Another(), new Last());
+
+        CompletableFuture<Boolean> completion = new TaskGraph(tasks).run(task -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            started.put(task.getName(), future);
+            return future.whenComplete((r, e) -> running.decrementAndGet());
+        }, 2);
+
+        assertEquals(2, started.size());
+        // 每完成一个任务只补充一个
+        for (int i = 0; i < tasks.size(); i++) {
+            CompletableFuture<Boolean> next = started.values().stream()
+                    .filter(future -> !future.isDone())
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+            next.complete(false);
+            assertTrue(running.get() <= 2);
+        }
+
+        assertEquals(tasks.size(), started.size());
+        assertEquals(2, maxRunning.get());
+        assertTrue(completion.isDone());
+        assertFalse(completion.join());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cyclicDependenciesAreRejected() {
+        new TaskGraph(Arrays.asList(new CycleA(), new CycleB(), new Independent()));
+    }
+
+    @Test
+    public void failedTaskDoesNotBlockOtherTasks() {
+        List<String> ran = new ArrayList<>();
+        CompletableFuture<Boolean> completion = new TaskGraph(Arrays.asList(new First(), new Second(), new Independent()))
+                .run(task -> {
+                    ran.add(task.getName());
+                    if (task instanceof First) {
+                        throw new IllegalStateException("接口异常");
+                    }
+                    return CompletableFuture.completedFuture(false);
+                }, 1);
+
+        assertTrue(completion.isDone());
+        assertFalse(completion.join());
+        assertTrue(ran.containsAll(Arrays.asList("First", "Second", "Independent")));
+    }
+
+    @Test
+    public void exceptionallyCompletedTaskDoesNotBlockIndependentTasks() {
+        List<String> ran = new ArrayList<>();
+        CompletableFuture<Boolean> completion = new TaskGraph(Arrays.asList(new First(), new Independent()))
+                .run(task -> {
+                    ran.add(task.getName());
+                    CompletableFuture<Boolean> future = new CompletableFuture<>();
+                    if (task instanceof First) {
+                        future.completeExceptionally(new IllegalStateException("接口异常"));
+                    } else {
+                        future.complete(false);
+                    }
+                    return future;
+                }, 2);
+
+        assertFalse(completion.join());
+        assertEquals(Arrays.asList("First", "Independent"), ran);
+    }
+
+    @Test
+    public void expiredCookieStopsLaunchingNewTasks() {
+        List<String> ran = new ArrayList<>();
+        CompletableFuture<Boolean> completion = new TaskGraph(Arrays.asList(new First(), new Second(), new Third()))
+                .run(task -> {
+                    ran.add(task.getName());
+                    return CompletableFuture.completedFuture(task instanceof First);
+                }, 1);
+
+        assertTrue(completion.join());
+        assertEquals(Collections.singletonList("First"), ran);
+    }
+
+    @Test
+    public void missingPrerequisiteIsTreatedAsCompleted() {
+        List<String> ran = new ArrayList<>();
+        CompletableFuture<Boolean> completion = new TaskGraph(Collections.singletonList(new Third()))
+                .run(task -> {
+                    ran.add(task.getName());
+                    return CompletableFuture.completedFuture(false);
+                }, 1);
+
+        assertFalse(completion.join());
+        assertEquals(Collections.singletonList("Third"), ran);
+    }
+
+    private abstract static class StubTask implements Task {
+        private final List<Class<? extends Task>> dependsOn;
+
+        @SafeVarargs
+        StubTask(Class<? extends Task>... dependsOn) {
+            this.dependsOn = Arrays.asList(dependsOn);
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String getName() {
+            return getClass().getSimpleName();
+        }
+
+        @Override
+        public List<Class<? extends Task>> dependsOn() {
+            return dependsOn;
+        }
+    }
+
+    private static class First extends StubTask {
+    }
+
+    private static class Second extends StubTask {
+        Second() {
+            super(First.class);
+        }
+    }
+
+    private static class Third extends StubTask {
+        Third() {
+            super(Second.class);
+        }
+    }
+
+    private static class Independent extends StubTask {
+    }
+
+    private static class Other extends StubTask {
+    }
+
+    private static class Another extends StubTask {
+    }
+
+    private static class Last extends StubTask {
+    }
+
+    private static class CycleA extends StubTask {
+        CycleA() {
+            super(CycleB.class);
+        }
+    }
+
+    private static class CycleB extends StubTask {
+        CycleB() {
+            super(CycleA.class);
+        }
+    }
+}
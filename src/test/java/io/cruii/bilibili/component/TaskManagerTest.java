@@ -0,0 +1,151 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.constant.TaskPriority;
+import io.cruii.bilibili.entity.TaskConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class TaskManagerTest {
+    private TaskRunStore taskRunStore;
+    private TaskManager taskManager;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        taskRunStore = mock(TaskRunStore.class);
+        when(taskRunStore.pending(anyString(), any())).thenReturn(true);
+        taskManager = new TaskManager(taskRunStore, new TaskClusterConfig());
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void repeatedPutQueuesAccountOnceWithLatestConfig() {
+        TaskConfig first = config("1");
+        TaskConfig second = config("1");
+        taskManager.put(first);
+        taskManager.put(second);
+
+        assertEquals(1, taskManager.size());
+        assertSame(second, taskManager.get());
+        assertTrue(taskManager.isEmpty());
+    }
+
+    @Test
+    public void getTakesHigherPriorityFirstAndKeepsOrderWithinPriority() {
+        taskManager.put(config("1"), TaskPriority.NORMAL);
+        taskManager.put(config("2"), TaskPriority.RETRY);
+        taskManager.put(config("3"), TaskPriority.NORMAL);
+        taskManager.put(config("4"), TaskPriority.HIGH);
+
+        assertEquals("4", taskManager.get().getDedeuserid());
+        assertEquals("2", taskManager.get().getDedeuserid());
+        assertEquals("1", taskManager.get().getDedeuserid());
+        assertEquals("3", taskManager.get().getDedeuserid());
+    }
+
+    @Test
+    public void lowerPriorityPutDoesNotDemoteQueuedAccount() {
+        taskManager.put(config("1"), TaskPriority.HIGH);
+        taskManager.put(config("1"), TaskPriority.NORMAL);
+
+        assertEquals(Integer.valueOf(1), taskManager.depth().get(TaskPriority.HIGH));
+        assertEquals(Integer.valueOf(0), taskManager.depth().get(TaskPriority.NORMAL));
+    }
+
+    @Test
+    public void promotedAccountIsReturnedOnceAndStaleEntryReleasesItsPermit() throws Exception {
+        taskManager.put(config("1"), TaskPriority.NORMAL);
+        taskManager.put(config("1"), TaskPriority.HIGH);
+        assertEquals(Integer.valueOf(1), taskManager.depth().get(TaskPriority.HIGH));
+        assertEquals(Integer.valueOf(0), taskManager.depth().get(TaskPriority.NORMAL));
+
+        assertEquals("1", taskManager.get().getDedeuserid());
+        taskManager.put(config("2"), TaskPriority.NORMAL);
+        // 低优先级队列中的旧元素被跳过，不会返回两次
+        assertEquals("2", taskManager.get().getDedeuserid());
+        assertTrue(taskManager.isEmpty());
+
+        Future<TaskConfig> blocked = executor.submit(taskManager::get);
+        try {
+            blocked.get(200L, TimeUnit.MILLISECONDS);
+            fail("队列为空时get()应当等待");
+        } catch (TimeoutException expected) {
+            // 没有多余的许可
+        }
+
+        taskManager.put(config("3"));
+        assertEquals("3", blocked.get(1L, TimeUnit.SECONDS).getDedeuserid());
+    }
+
+    @Test
+    public void runningAccountIsRefusedUntilFinished() {
+        taskManager.put(config("1"));
+        assertEquals("1", taskManager.get().getDedeuserid());
+
+        // 租约过期也不会让执行中的账号再次入队
+        taskManager.put(config("1"), TaskPriority.HIGH);
+        taskManager.put(config("1"), TaskPriority.RETRY);
+        assertTrue(taskManager.isEmpty());
+        verify(taskRunStore, times(1)).pending(anyString(), any());
+
+        taskManager.finished("1");
+        taskManager.put(config("1"), TaskPriority.RETRY);
+        assertEquals(1, taskManager.size());
+    }
+
+    @Test
+    public void putAfterEntryIsTakenQueuesLatestConfig() {
+        taskManager.put(config("1"));
+        taskManager.get();
+        taskManager.finished("1");
+
+        TaskConfig refreshed = config("1");
+        taskManager.put(refreshed);
+        assertEquals(1, taskManager.size());
+        assertSame(refreshed, taskManager.get());
+    }
+
+    @Test
+    public void interruptedGetReturnsNull() throws Exception {
+        Future<TaskConfig> blocked = executor.submit(taskManager::get);
+        Thread.sleep(100L);
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(1L, TimeUnit.SECONDS));
+        assertNull(blocked.get());
+    }
+
+    private static TaskConfig config(String dedeuserid) {
+        TaskConfig config = new TaskConfig();
+        config.setDedeuserid(dedeuserid);
+        return config;
+    }
+}
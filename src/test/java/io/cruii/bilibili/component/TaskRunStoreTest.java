@@ -0,0 +1,169 @@
+package io.cruii.bilibili.component;
+
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import io.cruii.bilibili.config.TaskClusterConfig;
+import io.cruii.bilibili.constant.TaskRunStatus;
+import io.cruii.bilibili.entity.TaskRun;
+import io.cruii.bilibili.mapper.TaskRunMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个节点的 {@link TaskRunStore} 共用同一个H2数据库，模拟争抢同一条执行记录
+ *
+ * @author cruii
+ * Created on 2022/01/27
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TaskRunStoreTest.StoreConfig.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:task_run;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.schema=classpath:sql/schema.sql",
+        "spring.datasource.initialization-mode=always"
+})
+public class TaskRunStoreTest {
+    private static final String DEDEUSERID = "287969457";
+    private static final int THREADS = 8;
+
+    @Autowired
+    private TaskRunMapper taskRunMapper;
+
+    private TaskRunStore nodeA;
+    private TaskRunStore nodeB;
+
+    @Before
+    public void setUp() {
+        taskRunMapper.delete(null);
+        nodeA = new TaskRunStore(taskRunMapper, node("node-a", Duration.ofMinutes(2L)));
+        nodeB = new TaskRunStore(taskRunMapper, node("node-b", Duration.ofMinutes(2L)));
+    }
+
+    @Test
+    public void pendingDoesNotResetRowWithLiveLease() {
+        assertTrue(nodeA.pending(DEDEUSERID, LocalDateTime.now()));
+        assertTrue(nodeA.claim(DEDEUSERID));
+
+        assertFalse(nodeB.pending(DEDEUSERID, LocalDateTime.now()));
+        assertFalse(nodeB.claim(DEDEUSERID));
+
+        TaskRun run = find();
+        assertEquals(TaskRunStatus.RUNNING, run.getStatus());
+        assertEquals("node-a", run.getOwner());
+    }
+
+    @Test
+    public void expiredLeaseCanBeTakenOver() {
+        TaskRunStore expired = new TaskRunStore(taskRunMapper, node("node-a", Duration.ofSeconds(-1L)));
+        assertTrue(expired.pending(DEDEUSERID, LocalDateTime.now()));
+        assertTrue(expired.claim(DEDEUSERID));
+
+        assertTrue(nodeB.pending(DEDEUSERID, LocalDateTime.now()));
+        assertTrue(nodeB.claim(DEDEUSERID));
+        assertEquals("node-b", find().getOwner());
+    }
+
+    @Test
+    public void finishedRowCanBeQueuedAgain() {
+        assertTrue(nodeA.pending(DEDEUSERID, LocalDateTime.now()));
+        assertTrue(nodeA.claim(DEDEUSERID));
+        nodeA.finish(DEDEUSERID, false);
+
+        assertTrue(nodeB.pending(DEDEUSERID, LocalDateTime.now()));
+        assertEquals(TaskRunStatus.PENDING, find().getStatus());
+    }
+
+    @Test
+    public void singleNodeRestartResumesInterruptedRow() {
+        TaskRunStore beforeRestart = new TaskRunStore(taskRunMapper, single("1@host"));
+        assertTrue(beforeRestart.pending(DEDEUSERID, LocalDateTime.now()));
+        beforeRestart.running(DEDEUSERID);
+
+        // 重启后节点标识变化，租约仍未过期
+        TaskRunStore afterRestart = new TaskRunStore(taskRunMapper, single("2@host"));
+        assertFalse(afterRestart.pending(DEDEUSERID, LocalDateTime.now()));
+
+        assertEquals(1, afterRestart.resetInterrupted());
+        assertEquals(1, afterRestart.listUnfinished().size());
+        assertTrue(afterRestart.pending(DEDEUSERID, LocalDateTime.now()));
+        assertEquals(TaskRunStatus.PENDING, find().getStatus());
+    }
+
+    @Test
+    public void onlyOneNodeClaimsWhenPutRaces() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                TaskRunStore store = i % 2 == 0 ? nodeA : nodeB;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    // 与 TaskManager#put 相同的顺序
+                    return store.pending(DEDEUSERID, LocalDateTime.now()) && store.claim(DEDEUSERID);
+                }));
+            }
+            start.countDown();
+            int claimed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    claimed++;
+                }
+            }
+            assertEquals(1, claimed);
+            assertEquals(TaskRunStatus.RUNNING, find().getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TaskRun find() {
+        return taskRunMapper.selectOne(Wrappers.lambdaQuery(TaskRun.class)
+                .eq(TaskRun::getDedeuserid, DEDEUSERID)
+                .eq(TaskRun::getRunDate, LocalDate.now()));
+    }
+
+    private static TaskClusterConfig node(String nodeId, Duration leaseDuration) {
+        TaskClusterConfig config = new TaskClusterConfig();
+        config.setEnabled(true);
+        config.setNodeId(nodeId);
+        config.setLeaseDuration(leaseDuration);
+        return config;
+    }
+
+    private static TaskClusterConfig single(String nodeId) {
+        TaskClusterConfig config = new TaskClusterConfig();
+        config.setNodeId(nodeId);
+        return config;
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, MybatisPlusAutoConfiguration.class})
+    @MapperScan("io.cruii.bilibili.mapper")
+    static class StoreConfig {
+    }
+}
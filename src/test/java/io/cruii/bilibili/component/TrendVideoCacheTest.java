@@ -0,0 +1,135 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.TrendVideo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class TrendVideoCacheTest {
+    private static final String REGION = "1";
+
+    private TrendVideoCache cache;
+    private final PendingLoader<String, BilibiliResponse<List<TrendVideo>>> loader = new PendingLoader<>();
+
+    @Before
+    public void setUp() {
+        CacheConfig config = new CacheConfig();
+        // 800毫秒后在后台刷新，1秒后过期
+        config.setTrendTtl(Duration.ofSeconds(1L));
+        config.setTrendFailureBackoff(Duration.ofMillis(100L));
+        cache = new TrendVideoCache(config);
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() {
+        List<CompletableFuture<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(cache.get(REGION, loader));
+        }
+        assertEquals(1, loader.count());
+        results.forEach(result -> assertFalse(result.isDone()));
+
+        loader.get(0).complete(response("BV1"));
+        results.forEach(result -> assertEquals(Collections.singletonList("BV1"), result.join()));
+        assertEquals(Collections.singletonList("BV1"), cache.get(REGION, loader).join());
+        assertEquals(1, loader.count());
+    }
+
+    @Test
+    public void refreshesInBackgroundAfterEightyPercentOfTtl() throws InterruptedException {
+        cache.get(REGION, loader);
+        loader.get(0).complete(response("BV1"));
+
+        TimeUnit.MILLISECONDS.sleep(850L);
+        CompletableFuture<List<String>> stale = cache.get(REGION, loader);
+        // 刷新期间仍返回旧的热榜，且只发起一次刷新
+        assertTrue(stale.isDone());
+        assertEquals(Collections.singletonList("BV1"), stale.join());
+        assertEquals(Collections.singletonList("BV1"), cache.get(REGION, loader).join());
+        assertEquals(2, loader.count());
+
+        loader.get(1).complete(response("BV2"));
+        assertEquals(Collections.singletonList("BV2"), cache.get(REGION, loader).join());
+        assertEquals(2, loader.count());
+    }
+
+    @Test
+    public void failedRefreshKeepsOldVideosUntilExpiry() throws InterruptedException {
+        cache.get(REGION, loader);
+        loader.get(0).complete(response("BV1"));
+
+        TimeUnit.MILLISECONDS.sleep(850L);
+        cache.get(REGION, loader);
+        loader.get(1).complete(failure());
+        assertEquals(Collections.singletonList("BV1"), cache.get(REGION, loader).join());
+        // 失败后的退避时间内不再刷新
+        assertEquals(2, loader.count());
+
+        TimeUnit.MILLISECONDS.sleep(200L);
+        // 过期后需要等待加载完成
+        CompletableFuture<List<String>> expired = cache.get(REGION, loader);
+        assertFalse(expired.isDone());
+        loader.last().complete(response("BV3"));
+        assertEquals(Collections.singletonList("BV3"), expired.join());
+    }
+
+    @Test
+    public void failedLoadIsRetriedOnlyAfterBackoff() throws InterruptedException {
+        CompletableFuture<List<String>> first = cache.get(REGION, loader);
+        loader.get(0).complete(failure());
+        assertTrue(first.isCompletedExceptionally());
+
+        assertTrue(cache.get(REGION, loader).isCompletedExceptionally());
+        assertEquals(1, loader.count());
+
+        TimeUnit.MILLISECONDS.sleep(150L);
+        cache.get(REGION, loader);
+        assertEquals(2, loader.count());
+    }
+
+    @Test
+    public void loaderThrowingSynchronouslyFailsTheFuture() {
+        CompletableFuture<List<String>> result = cache.get(REGION, regionId -> {
+            throw new IllegalStateException("连接池已关闭");
+        });
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1L, cache.stats().get("failures"));
+    }
+
+    private static BilibiliResponse<List<TrendVideo>> response(String... bvids) {
+        List<TrendVideo> videos = new ArrayList<>();
+        Arrays.stream(bvids).forEach(bvid -> {
+            TrendVideo video = new TrendVideo();
+            video.setBvid(bvid);
+            videos.add(video);
+        });
+        BilibiliResponse<List<TrendVideo>> resp = new BilibiliResponse<>();
+        resp.setCode(0);
+        resp.setData(videos);
+        return resp;
+    }
+
+    private static BilibiliResponse<List<TrendVideo>> failure() {
+        BilibiliResponse<List<TrendVideo>> resp = new BilibiliResponse<>();
+        resp.setCode(-412);
+        resp.setMessage("请求被拦截");
+        return resp;
+    }
+}
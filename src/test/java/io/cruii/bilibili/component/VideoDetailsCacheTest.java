@@ -0,0 +1,92 @@
+package io.cruii.bilibili.component;
+
+import io.cruii.bilibili.config.CacheConfig;
+import io.cruii.bilibili.model.BilibiliResponse;
+import io.cruii.bilibili.model.VideoDetails;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author cruii
+ * Created on 2022/01/27
+ */
+public class VideoDetailsCacheTest {
+    private static final String BVID = "BV1GJ411x7h7";
+
+    private VideoDetailsCache cache;
+    private final PendingLoader<String, BilibiliResponse<VideoDetails>> loader = new PendingLoader<>();
+
+    @Before
+    public void setUp() {
+        CacheConfig config = new CacheConfig();
+        config.setVideoCapacity(2);
+        config.setVideoTtl(Duration.ofMillis(200L));
+        cache = new VideoDetailsCache(config);
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() {
+        CompletableFuture<BilibiliResponse<VideoDetails>> first = cache.get(BVID, loader);
+        CompletableFuture<BilibiliResponse<VideoDetails>> second = cache.get(BVID, loader);
+        assertEquals(1, loader.count());
+        assertFalse(second.isDone());
+
+        BilibiliResponse<VideoDetails> resp = response(0);
+        loader.get(0).complete(resp);
+        assertSame(resp, first.join());
+        assertSame(resp, second.join());
+        assertSame(resp, cache.get(BVID, loader).join());
+        assertEquals(1, loader.count());
+    }
+
+    @Test
+    public void synchronousLoaderIsSupported() {
+        BilibiliResponse<VideoDetails> resp = response(0);
+        assertSame(resp, cache.get(BVID, bvid -> CompletableFuture.completedFuture(resp)).join());
+        assertSame(resp, cache.get(BVID, loader).join());
+        assertEquals(0, loader.count());
+    }
+
+    @Test
+    public void onlySuccessfulResponsesAreCached() {
+        cache.get(BVID, loader);
+        loader.get(0).complete(response(-404));
+        cache.get(BVID, loader);
+        assertEquals(2, loader.count());
+
+        loader.get(1).completeExceptionally(new IllegalStateException("timeout"));
+        cache.get(BVID, loader);
+        assertEquals(3, loader.count());
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() throws InterruptedException {
+        cache.get(BVID, loader);
+        loader.get(0).complete(response(0));
+        cache.get(BVID, loader);
+        assertEquals(1, loader.count());
+
+        TimeUnit.MILLISECONDS.sleep(250L);
+        cache.get(BVID, loader);
+        assertEquals(2, loader.count());
+    }
+
+    private static BilibiliResponse<VideoDetails> response(int code) {
+        BilibiliResponse<VideoDetails> resp = new BilibiliResponse<>();
+        resp.setCode(code);
+        if (code == 0) {
+            VideoDetails details = new VideoDetails();
+            details.setBvid(BVID);
+            resp.setData(details);
+        }
+        return resp;
+    }
+}